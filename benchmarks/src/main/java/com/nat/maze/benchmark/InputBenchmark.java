@@ -0,0 +1,65 @@
+package com.nat.maze.benchmark;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import com.nat.maze.game.GameState;
+import com.nat.maze.game.Input;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link Input#update} with pending keys, cycling through moves and turns so the
+ * collision checks against the map run every time. With a burst of several keys per update,
+ * as when keys repeat faster than the game updates, they are all read by the one update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InputBenchmark {
+    private static final String KEYS = "wwwwlwwwwssaaddjj";
+
+    @Param({"maze", "room"})
+    public String map;
+
+    @Param({"1", "8"})
+    public int burst;
+
+    private DefaultVirtualTerminal terminal;
+    private Screen screen;
+    private Input input;
+    private KeyStroke[] keys;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = new DefaultVirtualTerminal(new TerminalSize(80, 24));
+        screen = new TerminalScreen(terminal);
+        screen.startScreen();
+        input = new Input(new GameState(Maps.config(map, 201)), screen);
+
+        keys = new KeyStroke[KEYS.length()];
+        for (int i = 0; i < keys.length; i++) keys[i] = new KeyStroke(KEYS.charAt(i), false, false);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        screen.stopScreen();
+    }
+
+    @Benchmark
+    public void update() throws IOException {
+        for (int i = 0; i < burst; i++) {
+            terminal.addInput(keys[next]);
+            next = (next + 1) % keys.length;
+        }
+        input.update(1);
+    }
+}
@@ -0,0 +1,62 @@
+package com.nat.maze.benchmark;
+
+import com.nat.maze.game.Map;
+import com.nat.maze.game.MapFile;
+import com.nat.maze.game.MazeGenerator;
+import com.nat.maze.game.generator.Algorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a map of {@code size * size} cells from disk in each format,
+ * or generating it again from a seed-only file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MapLoadBenchmark {
+    @Param({"101", "1001", "4001"})
+    public int size;
+
+    @Param({"text", "binary", "seed"})
+    public String format;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        MazeGenerator generator = new MazeGenerator(size / 2, size / 2, Algorithm.Backtracker, Maps.SEED);
+        if (format.equals("seed")) {
+            file = Files.createTempFile("maze", MapFile.SEED_EXTENSION);
+            MapFile.writeSeed(generator.toMap(), file.toString());
+            return;
+        }
+
+        Path text = Files.createTempFile("maze", MapFile.TEXT_EXTENSION);
+        generator.writeToFile(text.toString());
+        if (format.equals("text")) {
+            file = text;
+        } else {
+            file = Files.createTempFile("maze", MapFile.BINARY_EXTENSION);
+            MapFile.writeBinary(MapFile.read(text), file.toString());
+            Files.delete(text);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Map load() throws IOException {
+        return MapFile.read(file);
+    }
+}
@@ -0,0 +1,61 @@
+package com.nat.maze.benchmark;
+
+import com.nat.maze.game.GameConfig;
+import com.nat.maze.game.Map;
+import com.nat.maze.game.MapFile;
+import com.nat.maze.game.MazeGenerator;
+import com.nat.maze.game.generator.Algorithm;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Maps shared by the benchmarks.
+ */
+final class Maps {
+    // every run benchmarks the same mazes
+    static final long SEED = 0x6D617A65L;
+
+    private Maps() {}
+
+    /**
+     * A generated maze whose map is roughly {@code size * size} cells.
+     */
+    static Map maze(int size) {
+        return new MazeGenerator(size / 2, size / 2, Algorithm.Backtracker, SEED).toMap();
+    }
+
+    /**
+     * A {@code size * size} room with only the outer walls, the worst case for ray lengths.
+     */
+    static Map room(int size) {
+        try {
+            Path file = Files.createTempFile("room", MapFile.TEXT_EXTENSION);
+            try (Writer w = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+                w.write(size + " " + size + "\n");
+                for (int y = 0; y < size; y++) {
+                    for (int x = 0; x < size; x++) {
+                        boolean edge = x == 0 || y == 0 || x == size - 1 || y == size - 1;
+                        int v = edge ? 2 : (x == 1 && y == size / 2) ? 1 : (x == size - 2 && y == size / 2) ? 3 : 0;
+                        w.write(v + (x == size - 1 ? "\n" : " "));
+                    }
+                }
+            }
+            Map m = MapFile.read(file);
+            Files.delete(file);
+            return m;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static GameConfig config(String kind, int size) {
+        GameConfig cfg = new GameConfig();
+        cfg.setMap(kind.equals("room") ? room(size) : maze(size));
+        return cfg;
+    }
+}
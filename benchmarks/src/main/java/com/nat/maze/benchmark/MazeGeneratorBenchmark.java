@@ -0,0 +1,29 @@
+package com.nat.maze.benchmark;
+
+import com.nat.maze.game.MazeGenerator;
+import com.nat.maze.game.generator.Algorithm;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating a {@code size * size} cell maze with each algorithm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MazeGeneratorBenchmark {
+    @Param({"50", "500", "2000"})
+    public int size;
+
+    @Param({"Backtracker", "Eller", "Wilson", "Kruskal", "BinaryTree"})
+    public Algorithm algorithm;
+
+    @Benchmark
+    public MazeGenerator generate() {
+        return new MazeGenerator(size, size, algorithm, Maps.SEED);
+    }
+}
@@ -0,0 +1,78 @@
+package com.nat.maze.benchmark;
+
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.virtual.DefaultVirtualTerminal;
+import com.nat.maze.game.GameConfig;
+import com.nat.maze.game.GameState;
+import com.nat.maze.game.Renderer;
+import com.nat.maze.game.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame of {@link Renderer#render} on a virtual terminal.
+ * {@code still} re-renders an unchanged view, {@code turning} turns the camera a little every frame
+ * so every column changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RendererBenchmark {
+    @Param({"80x24", "320x90", "1280x360"})
+    public String terminal;
+
+    @Param({"maze", "room"})
+    public String map;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    @Param({"true", "false"})
+    public boolean skipping;
+
+    private Screen screen;
+    private GameState gameState;
+    private Renderer renderer;
+
+    private final double cos = Math.cos(0.01);
+    private final double sin = Math.sin(0.01);
+
+    @Setup
+    public void setup() throws IOException {
+        String[] size = terminal.split("x");
+        screen = new TerminalScreen(new DefaultVirtualTerminal(
+                new TerminalSize(Integer.parseInt(size[0]), Integer.parseInt(size[1]))));
+        screen.startScreen();
+
+        GameConfig cfg = Maps.config(map, 201);
+        cfg.setParallelRendering(parallel);
+        cfg.setEmptySpaceSkipping(skipping);
+        gameState = new GameState(cfg);
+        renderer = new Renderer(gameState, screen);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        screen.stopScreen();
+    }
+
+    @Benchmark
+    public void still() throws IOException {
+        renderer.render(1);
+    }
+
+    @Benchmark
+    public void turning() throws IOException {
+        Player p = gameState.player;
+        p.direction.rotate(cos, sin);
+        p.plane.rotate(cos, sin);
+        renderer.render(1);
+    }
+}
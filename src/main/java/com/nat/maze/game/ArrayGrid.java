@@ -0,0 +1,82 @@
+package com.nat.maze.game;
+
+import com.nat.maze.game.entity.Entity;
+
+/**
+ * Compact storage for the cells of a map.
+ * Cells are kept as {@link Entity.Type} values in a single row-major byte array,
+ * so looking up a cell is one array access instead of a pointer chase per row.
+ */
+public final class ArrayGrid implements Grid {
+    /**
+     * The most cells a grid can hold, the longest array every VM can allocate.
+     */
+    public static final long MAX_CELLS = Integer.MAX_VALUE - 8;
+
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+
+    public ArrayGrid(int w, int h) {
+        this(w, h, new byte[cells(w, h)]);
+    }
+
+    private static int cells(int w, int h) {
+        if (w < 0 || h < 0) throw new IllegalArgumentException("Invalid grid size " + w + "x" + h);
+        if ((long) w * h > MAX_CELLS) {
+            throw new IllegalArgumentException("A " + w + "x" + h + " grid doesn't fit in an array, use a ChunkedGrid");
+        }
+        return w * h;
+    }
+
+    ArrayGrid(int w, int h, byte[] c) {
+        width = w;
+        height = h;
+        cells = c;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    @Override
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    @Override
+    public byte get(int x, int y) {
+        return cells[y * width + x];
+    }
+
+    @Override
+    public byte get(int index) {
+        return cells[index];
+    }
+
+    @Override
+    public Entity.Type typeAt(int x, int y) {
+        return Entity.Type.fromValue(cells[y * width + x]);
+    }
+
+    @Override
+    public boolean isWall(int x, int y) {
+        return cells[y * width + x] == Entity.Type.Wall.value;
+    }
+
+    @Override
+    public boolean isSolid(int x, int y) {
+        return cells[y * width + x] > 0;
+    }
+}
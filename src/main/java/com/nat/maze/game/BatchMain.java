@@ -0,0 +1,144 @@
+package com.nat.maze.game;
+
+import com.nat.maze.game.generator.Algorithm;
+import com.nat.maze.game.solver.MazeSolver;
+import com.nat.maze.game.solver.Solution;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates and validates many mazes at once and writes the valid ones to a directory.
+ * <p>
+ * Usage: {@code BatchMain <count> <width>x<height>[,<width>x<height>...] <directory> [algorithm] [threads] [seed] [extension]}
+ * <p>
+ * Mazes are generated on all cores, each from its own seed so a batch can be reproduced, and handed to
+ * a single writer through a small bounded queue. When the disk can't keep up the generators block,
+ * so at most a few mazes per thread are in memory at any time.
+ * The sizes are in maze cells and are used round robin, the extension is ".map", ".map.gz", ".mapb"
+ * or ".seed.mapb" to only write the seed of each maze.
+ */
+public class BatchMain {
+    private static final class Maze {
+        static final Maze END = new Maze(-1, null, null);
+
+        final int index;
+        final MazeGenerator generator;
+        final Map map;
+
+        Maze(int i, MazeGenerator g, Map m) {
+            index = i;
+            generator = g;
+            map = m;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: BatchMain <count> <width>x<height>[,<width>x<height>...] <directory> [algorithm] [threads] [seed] [extension]");
+            System.exit(1);
+        }
+
+        final int count = Integer.parseInt(args[0]);
+        String[] sizeArgs = args[1].split(",");
+        final int[] widths = new int[sizeArgs.length];
+        final int[] heights = new int[sizeArgs.length];
+        for (int i = 0; i < sizeArgs.length; i++) {
+            String[] wh = sizeArgs[i].split("x");
+            widths[i] = Integer.parseInt(wh[0]);
+            heights[i] = Integer.parseInt(wh[1]);
+        }
+        final Path directory = Paths.get(args[2]);
+        final Algorithm algorithm = args.length > 3 ? Algorithm.valueOf(args[3]) : Algorithm.Backtracker;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 5 ? Long.parseLong(args[5]) : System.nanoTime();
+        final String extension = args.length > 6 ? args[6] : MapFile.TEXT_EXTENSION;
+        final boolean seedOnly = extension.equals(MapFile.SEED_EXTENSION);
+        final boolean binary = seedOnly || extension.startsWith(MapFile.BINARY_EXTENSION);
+
+        Files.createDirectories(directory);
+
+        // one seed per maze, drawn up front so the result doesn't depend on which thread takes which maze
+        final long[] seeds = new long[count];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int i = 0; i < count; i++) seeds[i] = root.nextLong();
+
+        final BlockingQueue<Maze> queue = new ArrayBlockingQueue<>(threads);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger invalid = new AtomicInteger();
+        final AtomicLong cells = new AtomicLong();
+
+        long start = System.nanoTime();
+
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < count) {
+                    int s = i % widths.length;
+                    MazeGenerator generator = new MazeGenerator(widths[s], heights[s], algorithm, seeds[i]);
+                    Map map = generator.toMap();
+
+                    String problem = validate(map);
+                    if (problem != null) {
+                        invalid.incrementAndGet();
+                        System.err.println("maze " + i + " is invalid: " + problem);
+                        continue;
+                    }
+                    cells.addAndGet((long) widths[s] * heights[s]);
+
+                    try {
+                        queue.put(new Maze(i, generator, binary ? map : null));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }, "maze-generator-" + t);
+            workers[t].start();
+        }
+
+        Thread writer = new Thread(() -> {
+            try {
+                Maze m;
+                while ((m = queue.take()) != Maze.END) {
+                    String file = directory.resolve(String.format("maze-%06d%s", m.index, extension)).toString();
+                    if (seedOnly) MapFile.writeSeed(m.map, file);
+                    else if (binary) MapFile.writeBinary(m.map, file);
+                    else m.generator.writeToFile(file);
+                }
+            } catch (InterruptedException | IOException e) {
+                e.printStackTrace();
+                System.exit(2);
+            }
+        }, "maze-writer");
+        writer.start();
+
+        for (Thread w : workers) w.join();
+        queue.put(Maze.END);
+        writer.join();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        // invalid mazes are neither written nor counted in the rates
+        int valid = count - invalid.get();
+        System.out.printf("%d mazes (%d invalid) in %.2fs: %.1f valid mazes/s, %.0f valid cells/s, seed %d%n",
+                count, invalid.get(), seconds, valid / seconds, cells.get() / seconds, seed);
+        if (invalid.get() > 0) System.exit(3);
+    }
+
+    /**
+     * Returns what is wrong with a generated map, or null if it is a closed maze with a reachable flag.
+     */
+    static String validate(Map map) {
+        if (!MazeSolver.isSealed(map.getGrid())) return "border is not closed";
+        Solution solution = new MazeSolver(map.getGrid()).solve(map, MazeSolver.Method.Bfs);
+        if (!solution.isFound()) return "flag is not reachable";
+        return null;
+    }
+}
@@ -0,0 +1,124 @@
+package com.nat.maze.game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A grid that only keeps the chunks of {@code SIZE * SIZE} cells that are in use in memory.
+ * <p>
+ * A chunk is loaded the first time one of its cells is read and stays resident until the
+ * capacity is reached, then the chunks that have not been read for the longest are dropped
+ * (the clock approximation of LRU). While playing those are the ones furthest from the player,
+ * so memory stays bounded by the capacity however large the map is.
+ * <p>
+ * Reads are safe from any number of threads, a chunk is only ever published once it is fully loaded.
+ */
+public final class ChunkedGrid implements Grid {
+    /**
+     * Supplies the cells of a chunk.
+     */
+    public interface Loader {
+        /**
+         * Fills {@code cells} with the chunk at chunk coordinates (cx, cy), row-major with a stride of {@link #SIZE}.
+         * Cells outside of the grid are never read. Called by one thread at a time.
+         */
+        void load(int cx, int cy, byte[] cells) throws IOException;
+    }
+
+    static final int BITS = 6;
+    public static final int SIZE = 1 << BITS;
+    private static final int MASK = SIZE - 1;
+
+    // 16 MB of cells
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final class Chunk {
+        final int id;
+        final byte[] cells = new byte[SIZE * SIZE];
+        // set whenever the chunk is read, cleared as the eviction hand passes it
+        boolean used = true;
+
+        Chunk(int i) {
+            id = i;
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final Loader loader;
+
+    private final AtomicReferenceArray<Chunk> chunks;
+    private final Chunk[] resident;
+    private int count = 0;
+    private int hand = 0;
+
+    public ChunkedGrid(int w, int h, Loader l) {
+        this(w, h, l, DEFAULT_CAPACITY);
+    }
+
+    public ChunkedGrid(int w, int h, Loader l, int capacity) {
+        width = w;
+        height = h;
+        chunksX = (w + MASK) >> BITS;
+        long total = (long) chunksX * ((h + MASK) >> BITS);
+        if (total > Integer.MAX_VALUE) throw new IllegalArgumentException("Grid is too large: " + w + "x" + h);
+        loader = l;
+        chunks = new AtomicReferenceArray<>((int) total);
+        resident = new Chunk[Math.max(1, capacity)];
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public byte get(int x, int y) {
+        Chunk c = chunks.get((y >> BITS) * chunksX + (x >> BITS));
+        if (c == null) c = load(x >> BITS, y >> BITS);
+        else if (!c.used) c.used = true;
+        return c.cells[((y & MASK) << BITS) | (x & MASK)];
+    }
+
+    /**
+     * Returns the number of chunks currently in memory.
+     */
+    public synchronized int getResidentChunks() {
+        return count;
+    }
+
+    private synchronized Chunk load(int cx, int cy) {
+        int id = cy * chunksX + cx;
+        Chunk c = chunks.get(id);
+        if (c != null) return c;
+
+        c = new Chunk(id);
+        try {
+            loader.load(cx, cy, c.cells);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (count < resident.length) {
+            resident[count++] = c;
+        } else {
+            // give every used chunk a second chance, two turns of the hand at most since readers set the flags concurrently
+            for (int n = 0; n < 2 * resident.length && resident[hand].used; n++) {
+                resident[hand].used = false;
+                hand = (hand + 1) % resident.length;
+            }
+            chunks.set(resident[hand].id, null);
+            resident[hand] = c;
+            hand = (hand + 1) % resident.length;
+        }
+        chunks.set(id, c);
+        return c;
+    }
+}
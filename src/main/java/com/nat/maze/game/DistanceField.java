@@ -0,0 +1,127 @@
+package com.nat.maze.game;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The Chebyshev distance from every cell of a map to the nearest solid cell, capped at {@link #MAX}.
+ * <p>
+ * A cell at distance d is the center of a square of {@code 2d - 1} cells on a side that are all empty,
+ * so a ray in that cell can jump straight to the edge of the square instead of checking every cell.
+ * Cells outside of the map count as solid, so no jump ever leaves the map.
+ * <p>
+ * Built with the two pass chamfer transform using unit weights for all eight neighbours, which is exact
+ * for the Chebyshev metric. Since no distance exceeds {@link #MAX}, a cell only depends on the cells at most
+ * that many rows away, so large maps are built in bands of rows on all cores, each with that many extra rows.
+ */
+final class DistanceField {
+    static final int MAX = 255;
+
+    // rows per band, maps with fewer rows are built in one go
+    private static final int BAND = 1024;
+
+    private final int width;
+    private final int height;
+    private final byte[] distance;
+
+    private DistanceField(int w, int h) {
+        width = w;
+        height = h;
+        distance = new byte[w * h];
+    }
+
+    static DistanceField build(Grid grid) {
+        DistanceField f = new DistanceField(grid.getWidth(), grid.getHeight());
+        int bands = (f.height + BAND - 1) / BAND;
+        if (bands <= 1) {
+            f.build(grid, 0, f.height);
+        } else {
+            ForkJoinPool.commonPool().invoke(new BandTask(f, grid, 0, bands));
+        }
+        return f;
+    }
+
+    int get(int x, int y) {
+        return distance[y * width + x] & 0xFF;
+    }
+
+    /**
+     * Computes the distances of rows [from, to).
+     */
+    private void build(Grid grid, int from, int to) {
+        int top = Math.max(0, from - MAX);
+        int bottom = Math.min(height, to + MAX);
+        int rows = bottom - top;
+        int[] d = new int[width * rows];
+
+        // rows beyond the band but inside the map are unknown, they only bound the distance by MAX
+        int above = top == 0 ? 0 : MAX;
+        int below = bottom == height ? 0 : MAX;
+
+        for (int y = 0, i = 0; y < rows; y++) {
+            for (int x = 0; x < width; x++, i++) {
+                if (grid.isSolid(x, top + y)) {
+                    d[i] = 0;
+                    continue;
+                }
+                int v = MAX;
+                if (x == 0) v = 1;
+                else v = Math.min(v, d[i - 1] + 1);
+                if (y == 0) v = Math.min(v, above + 1);
+                else {
+                    v = Math.min(v, d[i - width] + 1);
+                    if (x > 0) v = Math.min(v, d[i - width - 1] + 1);
+                    v = Math.min(v, x + 1 < width ? d[i - width + 1] + 1 : 1);
+                }
+                d[i] = v;
+            }
+        }
+        for (int y = rows - 1, i = width * rows - 1; y >= 0; y--) {
+            for (int x = width - 1; x >= 0; x--, i--) {
+                int v = d[i];
+                if (v == 0) continue;
+                v = Math.min(v, x + 1 < width ? d[i + 1] + 1 : 1);
+                if (y == rows - 1) v = Math.min(v, below + 1);
+                else {
+                    v = Math.min(v, d[i + width] + 1);
+                    if (x + 1 < width) v = Math.min(v, d[i + width + 1] + 1);
+                    v = Math.min(v, x > 0 ? d[i + width - 1] + 1 : 1);
+                }
+                d[i] = Math.min(v, MAX);
+            }
+        }
+
+        for (int y = from; y < to; y++) {
+            int src = (y - top) * width;
+            for (int x = 0; x < width; x++) {
+                distance[y * width + x] = (byte) d[src + x];
+            }
+        }
+    }
+
+    private static final class BandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final DistanceField field;
+        private final Grid grid;
+        private final int from;
+        private final int to;
+
+        BandTask(DistanceField f, Grid g, int from, int to) {
+            field = f;
+            grid = g;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                field.build(grid, from * BAND, Math.min(field.height, (from + 1) * BAND));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BandTask(field, grid, from, mid), new BandTask(field, grid, mid, to));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.nat.maze.game;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces a loop to a fixed rate using {@link System#nanoTime()}.
+ * The thread is parked until shortly before a frame is due and only yields for the last moment,
+ * so waiting costs next to no CPU while frames still start within a fraction of a millisecond.
+ */
+public final class FrameScheduler {
+    // parking is only trusted to wake up this close to the deadline
+    private static final long SPIN_NANOS = 100_000;
+
+    private final long period;
+    private long next;
+
+    public FrameScheduler(double fps) {
+        if (!(fps > 0) || Double.isInfinite(fps)) throw new IllegalArgumentException("Invalid frame rate " + fps);
+        period = (long) (1_000_000_000L / fps);
+        next = System.nanoTime() + period;
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Blocks until the next frame is due.
+     */
+    public void awaitNextFrame() {
+        long now;
+        while ((now = System.nanoTime()) < next - SPIN_NANOS) {
+            LockSupport.parkNanos(next - SPIN_NANOS - now);
+        }
+        while (System.nanoTime() < next) {
+            Thread.yield();
+        }
+
+        next += period;
+        // more than a frame late, start over instead of running the missed frames back to back
+        now = System.nanoTime();
+        if (now - next > period) next = now + period;
+    }
+}
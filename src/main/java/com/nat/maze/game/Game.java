@@ -1,17 +1,36 @@
 package com.nat.maze.game;
 
+import com.googlecode.lanterna.TerminalSize;
+import com.googlecode.lanterna.input.InputProvider;
 import com.googlecode.lanterna.screen.Screen;
 import com.nat.maze.game.entity.Entity;
+import com.nat.maze.game.metrics.Metrics;
 import com.nat.maze.math.Vector2;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 public class Game {
+    // update() is called this often, a delta of 1 is one such step
+    public static final int UPDATES_PER_SECOND = 60;
+    private static final int MAX_UPDATES_PER_FRAME = 5;
+    private static final long STEP = 1_000_000_000L / UPDATES_PER_SECOND;
+
     private final Screen screen;
     private final GameConfig gameConfig;
     private final GameState gameState;
     private final Renderer renderer;
     private final Input input;
+    private final Metrics metrics;
+
+    // the state of tick(), times in nanoseconds
+    private boolean started = false;
+    private boolean finished = false;
+    private long startTime;
+    private long previous;
+    private long lag = 0;
+    // rendered by advance() and not refreshed yet
+    private boolean framePending = false;
 
     public Game(GameConfig cfg, Screen s) {
         gameConfig = cfg;
@@ -19,13 +38,31 @@ public class Game {
         gameState = new GameState(gameConfig);
         renderer = new Renderer(gameState, screen);
         input = new Input(gameState, screen);
+        metrics = gameState.metrics;
+    }
+
+    /**
+     * Creates a game without a terminal, see {@link #simulate(long)}.
+     *
+     * @param in   Where the keys come from, e.g. a {@link ScriptedInput}.
+     * @param size Size of the in-memory framebuffer, or null to not render at all.
+     */
+    public Game(GameConfig cfg, InputProvider in, TerminalSize size) {
+        gameConfig = cfg;
+        screen = null;
+        gameState = new GameState(gameConfig);
+        renderer = size != null ? new Renderer(gameState, size) : null;
+        input = new Input(gameState, in);
+        metrics = gameState.metrics;
     }
 
     public void update(double delta) throws IOException {
         input.update(delta);
 
+        if (screen != null && screen.doResizeIfNecessary() != null) gameState.markDirty();
+
         Vector2 pos = gameState.player.position;
-        if (gameState.map.getMap()[(int) pos.x][(int) pos.y] == Entity.Type.Flag) {
+        if (gameState.map.getGrid().typeAt((int) pos.x, (int) pos.y) == Entity.Type.Flag) {
             gameState.won = true;
             gameState.done = true;
         }
@@ -36,28 +73,122 @@ public class Game {
     }
 
     public void loop() throws IOException {
-        double startTime = System.currentTimeMillis();
+        FrameScheduler frames = new FrameScheduler(gameConfig.getTargetFps());
+        while (tick()) {
+            frames.awaitNextFrame();
+        }
+    }
+
+    /**
+     * Runs the updates that are due since the last call and renders a frame if anything changed.
+     * Meant to be called at the target frame rate, by {@link #loop()} or by a scheduler shared with other games.
+     *
+     * @return Whether the game is still running. Once it is done the clear time is set and the metrics are written.
+     */
+    public boolean tick() throws IOException {
+        boolean running = advance();
+        refresh();
+        return running;
+    }
+
+    /**
+     * The part of {@link #tick()} that never waits on the terminal: runs the updates that are due and renders
+     * a frame into the screen's back buffer if anything changed. {@link #refresh()} writes it out, and must be
+     * done before the next call.
+     *
+     * @return Whether the game is still running.
+     */
+    public boolean advance() throws IOException {
+        if (finished) return false;
+
+        long now = System.nanoTime();
+        if (!started) {
+            started = true;
+            startTime = now;
+            previous = now;
+        }
+        lag += now - previous;
+        previous = now;
+        // don't try to catch up on more than a few updates after a stall
+        if (lag > MAX_UPDATES_PER_FRAME * STEP) lag = MAX_UPDATES_PER_FRAME * STEP;
 
-        int targetMillis = 1000 / 60,
-            lastTime = (int) System.currentTimeMillis(),
-            targetTime = lastTime + targetMillis;
-        double delta;
+        // the game advances in fixed steps, however often it is rendered
+        while (lag >= STEP && !gameState.done) {
+            timedUpdate();
+            lag -= STEP;
+        }
+
+        // nothing changed, the last frame is still on screen
+        if (gameState.consumeDirty()) {
+            metrics.beginFrame();
+            render((double) lag / STEP);
+            // the frame ends here, the refresh may run on another thread and after a wait of its own
+            metrics.endFrame();
+            framePending = true;
+        }
+
+        if (!gameState.done) return true;
+
+        finished = true;
+        gameState.clearTime = (System.nanoTime() - startTime) / 1e9;
+        writeMetrics();
+        return false;
+    }
+
+    /**
+     * Writes the frame rendered by the last {@link #advance()} to the terminal, if there is one.
+     */
+    public void refresh() throws IOException {
+        if (!framePending) return;
+        framePending = false;
+        long start = System.nanoTime();
+        screen.refresh();
+        metrics.record(Metrics.Stage.Refresh, System.nanoTime() - start);
+    }
 
-        while (!gameState.done) {
-            int current = (int) System.currentTimeMillis(); // Now time
-            if (current < targetTime) continue; // Stop here if it's not time for the next frame
-            delta = (double) targetMillis / (current - lastTime);//Scale game on how late frame is.
-            lastTime = current;
-            targetTime = targetMillis + targetTime;// Create next frame where it should be (in targetMillis) and subtract if frame was late.
+    private void timedUpdate() throws IOException {
+        long start = System.nanoTime();
+        update(1);
+        metrics.record(Metrics.Stage.Update, System.nanoTime() - start);
+    }
 
-            update(delta);
-            render(delta);
+    private void writeMetrics() throws IOException {
+        if (gameConfig.getMetricsFile() != null) metrics.write(Paths.get(gameConfig.getMetricsFile()));
+    }
 
-            screen.refresh();
-            Thread.yield();
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Runs a game without a terminal as fast as possible, one update per tick and a frame whenever
+     * something changed. The clear time is in game time, so a replay always gives the same result.
+     *
+     * @param maxTicks Stop after this many updates even if the game is not done.
+     * @return The number of updates run.
+     */
+    public long simulate(long maxTicks) throws IOException {
+        long ticks = 0;
+        while (!gameState.done && ticks < maxTicks) {
+            timedUpdate();
+            ticks++;
+            if (renderer != null && gameState.consumeDirty()) {
+                metrics.beginFrame();
+                render(1);
+                metrics.endFrame();
+            }
         }
 
-        gameState.clearTime = (System.currentTimeMillis() - startTime) / 1000;
+        gameState.clearTime = (double) ticks / UPDATES_PER_SECOND;
+        writeMetrics();
+        return ticks;
+    }
+
+    /**
+     * Returns a hash of the last rendered frame, or 0 if the game does not render.
+     */
+    public int frameHash() {
+        return renderer != null ? renderer.frameHash() : 0;
     }
 
     public boolean isWon() {
@@ -10,4 +10,56 @@ public class GameConfig {
 
     public String getMapPath() { return mapPath; }
     public void setMapPath(String s) {mapPath = s;}
+
+    // a map that is already in memory, takes precedence over the map path
+    private Map map;
+
+    public Map getMap() { return map; }
+    public void setMap(Map m) {map = m;}
+
+    // cast the rays of a frame on all cores
+    private boolean parallelRendering = Runtime.getRuntime().availableProcessors() > 1;
+
+    public boolean isParallelRendering() { return parallelRendering; }
+    public void setParallelRendering(boolean b) {parallelRendering = b;}
+
+    // how often a frame may be rendered, the game itself always updates at Game.UPDATES_PER_SECOND
+    private double targetFps = 60;
+
+    public double getTargetFps() { return targetFps; }
+    public void setTargetFps(double f) {
+        // the game and the server divide a second by it to get the frame period
+        if (!(f > 0) || Double.isInfinite(f)) throw new IllegalArgumentException("Invalid target fps " + f);
+        targetFps = f;
+    }
+
+    // how far the player sees, rays stop at this distance (see Player.depth)
+    private double viewDistance = 16;
+
+    public double getViewDistance() { return viewDistance; }
+    public void setViewDistance(double d) {viewDistance = d;}
+
+    // show the timings of the last frame on the top line of the screen
+    private boolean metricsHud = false;
+
+    public boolean isMetricsHud() { return metricsHud; }
+    public void setMetricsHud(boolean b) {metricsHud = b;}
+
+    // where the metrics of a game are written when it ends, as JSON if the name ends in ".json" and CSV otherwise
+    private String metricsFile;
+
+    public String getMetricsFile() { return metricsFile; }
+    public void setMetricsFile(String s) {metricsFile = s;}
+
+    // let rays jump over empty space using the map's distance field, only pays off on open maps
+    private boolean emptySpaceSkipping = true;
+
+    public boolean isEmptySpaceSkipping() { return emptySpaceSkipping; }
+    public void setEmptySpaceSkipping(boolean b) {emptySpaceSkipping = b;}
+
+    // how many updates a key press keeps moving the player, terminals report presses and repeats but never releases
+    private int keyHoldFrames = 1;
+
+    public int getKeyHoldFrames() { return keyHoldFrames; }
+    public void setKeyHoldFrames(int n) {keyHoldFrames = n;}
 }
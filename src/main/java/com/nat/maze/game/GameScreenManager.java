@@ -11,20 +11,33 @@ import com.googlecode.lanterna.screen.TerminalScreen;
 import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
 import com.googlecode.lanterna.terminal.Terminal;
 import com.googlecode.lanterna.terminal.swing.SwingTerminalFontConfiguration;
+import com.nat.maze.game.generator.Algorithm;
 
 import java.awt.*;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 public class GameScreenManager {
     private static boolean shouldExit = false;
     private static boolean shouldPlay = false;
     static GameConfig cfg = new GameConfig();
 
+    // the next random maze is generated while the current one is played
+    private static final Pregenerator pregenerator = new Pregenerator();
+    private static int lastWidth = 10;
+    private static int lastHeight = 10;
+    private static Algorithm lastAlgorithm = Algorithm.Backtracker;
+
+    // the maps to choose from, listed in the background so the menu never waits for the disk
+    private static final MapIndex mapIndex = new MapIndex(Paths.get("./maps/"));
+    private static MapIndex.Order mapOrder = MapIndex.Order.Name;
+    private static String mapFilter = "";
+
     private GameScreenManager() {}
 
     private static Screen createMenuScreen() throws IOException {
@@ -59,6 +72,8 @@ public class GameScreenManager {
 
     public static void start() throws IOException {
         while (!shouldExit) {
+            pregenerator.prepare(lastWidth, lastHeight, lastAlgorithm);
+            mapIndex.start();
             try (final Screen screen = GameScreenManager.createMenuScreen()) {
                 WindowBasedTextGUI gui = new MultiWindowTextGUI(screen);
                 screen.startScreen();
@@ -69,18 +84,61 @@ public class GameScreenManager {
                 gridLayout.setHorizontalSpacing(3);
                 com.googlecode.lanterna.gui2.Label title = new com.googlecode.lanterna.gui2.Label("Map path:");
                 contentPanel.addComponent(title);
-                ComboBox<Path> comboBox = new ComboBox<>();
-                try (Stream<Path> paths = Files.walk(Paths.get("./maps/"))) {
-                    paths
-                            .filter(Files::isRegularFile)
-                            .filter((p) -> p.getFileName().toString().endsWith(".map"))
-                            .forEach(comboBox::addItem);
-                }
+                ComboBox<MapIndex.Entry> comboBox = new ComboBox<>();
                 contentPanel.addComponent(comboBox);
 
+                com.googlecode.lanterna.gui2.Label orderLabel = new Label("Sort by");
+                contentPanel.addComponent(orderLabel);
+
+                ComboBox<MapIndex.Order> orderComboBox = new ComboBox<>(MapIndex.Order.values());
+                orderComboBox.setSelectedItem(mapOrder);
+                contentPanel.addComponent(orderComboBox);
+
+                com.googlecode.lanterna.gui2.Label filterLabel = new Label("Filter");
+                contentPanel.addComponent(filterLabel);
+
+                com.googlecode.lanterna.gui2.TextBox filterTextBox = new com.googlecode.lanterna.gui2.TextBox(mapFilter);
+                contentPanel.addComponent(filterTextBox);
+
+                // lists the maps again keeping the selection, only run on the GUI thread
+                Runnable listMaps = () -> {
+                    MapIndex.Entry selected = comboBox.getSelectedItem();
+                    comboBox.clearItems();
+                    for (MapIndex.Entry e : mapIndex.list(mapOrder, mapFilter)) {
+                        comboBox.addItem(e);
+                        if (selected != null && e.getPath().equals(selected.getPath())) comboBox.setSelectedItem(e);
+                    }
+                };
+                listMaps.run();
+                orderComboBox.addListener((index, previous, byUser) -> {
+                    mapOrder = orderComboBox.getSelectedItem();
+                    listMaps.run();
+                });
+                filterTextBox.setTextChangeListener((text, byUser) -> {
+                    mapFilter = text;
+                    listMaps.run();
+                });
+                // the index reports every few hundred files while it walks, one queued refresh covers them all
+                AtomicBoolean listQueued = new AtomicBoolean();
+                mapIndex.setListener(() -> {
+                    if (!listQueued.compareAndSet(false, true)) return;
+                    gui.getGUIThread().invokeLater(() -> {
+                        listQueued.set(false);
+                        listMaps.run();
+                    });
+                });
+
+                // the maze the Random button is waiting for, only touched on the GUI thread
+                final Pregenerator.Job[] waiting = new Pregenerator.Job[1];
+
                 com.googlecode.lanterna.gui2.Button button = new com.googlecode.lanterna.gui2.Button("Play", () -> {
+                    MapIndex.Entry selected = comboBox.getSelectedItem();
+                    if (selected == null) return;
+                    if (waiting[0] != null) waiting[0].cancel();
+                    waiting[0] = null;
                     shouldPlay = true;
-                    cfg.setMapPath(comboBox.getText());
+                    cfg.setMapPath(selected.getPath().toString());
+                    cfg.setMap(null);
                     window.close();
                 });
                 contentPanel.addComponent(button);
@@ -91,34 +149,86 @@ public class GameScreenManager {
                 com.googlecode.lanterna.gui2.Label widthLabel = new Label("Width");
                 contentPanel.addComponent(widthLabel);
 
-                com.googlecode.lanterna.gui2.TextBox widthTextBox = new com.googlecode.lanterna.gui2.TextBox("10");
+                com.googlecode.lanterna.gui2.TextBox widthTextBox = new com.googlecode.lanterna.gui2.TextBox(String.valueOf(lastWidth));
                 widthTextBox.setValidationPattern(Pattern.compile("[0-9]*"));
                 contentPanel.addComponent(widthTextBox);
 
                 com.googlecode.lanterna.gui2.Label heightLabel = new Label("Height");
                 contentPanel.addComponent(heightLabel);
 
-                com.googlecode.lanterna.gui2.TextBox heightTextBox = new com.googlecode.lanterna.gui2.TextBox("10");
+                com.googlecode.lanterna.gui2.TextBox heightTextBox = new com.googlecode.lanterna.gui2.TextBox(String.valueOf(lastHeight));
                 heightTextBox.setValidationPattern(Pattern.compile("[0-9]*"));
                 contentPanel.addComponent(heightTextBox);
 
+                com.googlecode.lanterna.gui2.Label algorithmLabel = new Label("Algorithm");
+                contentPanel.addComponent(algorithmLabel);
+
+                ComboBox<Algorithm> algorithmComboBox = new ComboBox<>(Algorithm.values());
+                algorithmComboBox.setSelectedItem(lastAlgorithm);
+                contentPanel.addComponent(algorithmComboBox);
+
+                com.googlecode.lanterna.gui2.Label statusLabel = new Label("");
+
                 com.googlecode.lanterna.gui2.Button genButton = new com.googlecode.lanterna.gui2.Button("Random", () -> {
-                    shouldPlay = true;
-                    new MazeGenerator(Integer.parseInt(widthTextBox.getText()),Integer.parseInt(heightTextBox.getText()))
-                            .writeToFile(".\\maps\\generated.map");
-                    cfg.setMapPath(".\\maps\\generated.map");
-                    window.close();
+                    if (waiting[0] != null) return;
+                    lastWidth = Integer.parseInt(widthTextBox.getText());
+                    lastHeight = Integer.parseInt(heightTextBox.getText());
+                    lastAlgorithm = algorithmComboBox.getSelectedItem();
+
+                    // usually generated in the background already, otherwise the menu shows how far it got
+                    Pregenerator.Job job = pregenerator.take(lastWidth, lastHeight, lastAlgorithm);
+                    if (job.isReady()) {
+                        shouldPlay = true;
+                        cfg.setMap(job.getResult().join());
+                        window.close();
+                        return;
+                    }
+
+                    waiting[0] = job;
+                    Timer progress = new Timer("menu-progress", true);
+                    progress.schedule(new TimerTask() {
+                        @Override
+                        public void run() {
+                            gui.getGUIThread().invokeLater(() -> {
+                                if (waiting[0] == job) statusLabel.setText(String.format("Generating %.0f%%", job.getProgress() * 100));
+                            });
+                        }
+                    }, 0, 100);
+                    job.getResult().whenComplete((map, error) -> {
+                        progress.cancel();
+                        gui.getGUIThread().invokeLater(() -> {
+                            if (waiting[0] != job) return;
+                            waiting[0] = null;
+                            if (map != null) {
+                                shouldPlay = true;
+                                cfg.setMap(map);
+                                window.close();
+                            } else {
+                                statusLabel.setText(error instanceof CancellationException ? "Cancelled" : "Failed: " + error.getMessage());
+                            }
+                        });
+                    });
                 });
                 contentPanel.addComponent(genButton);
 
                 com.googlecode.lanterna.gui2.Button exitButton = new Button("Quit", () -> {
+                    if (waiting[0] != null) waiting[0].cancel();
+                    waiting[0] = null;
                     shouldExit = true;
                     window.close();
                 });
                 contentPanel.addComponent(exitButton);
 
+                com.googlecode.lanterna.gui2.Button cancelButton = new Button("Cancel", () -> {
+                    if (waiting[0] == null) return;
+                    waiting[0].cancel();
+                });
+                contentPanel.addComponent(cancelButton);
+                contentPanel.addComponent(statusLabel);
+
                 window.setComponent(contentPanel);
                 gui.addWindowAndWait(window);
+                mapIndex.setListener(null);
             }
 
             if (!shouldPlay) break;
@@ -126,9 +236,16 @@ public class GameScreenManager {
             try (final Screen screen = GameScreenManager.createGameScreen()) {
                 screen.startScreen();
                 Game game = new Game(cfg, screen);
+                pregenerator.prepare(lastWidth, lastHeight, lastAlgorithm);
                 game.loop();
 
                 if (game.isWon()) {
+                    try {
+                        if (cfg.getMap() == null) mapIndex.recordClear(Paths.get(cfg.getMapPath()), game.getClearTime());
+                    } catch (IOException e) {
+                        // only the clear time is lost
+                        System.err.println("Can't save the clear time: " + e);
+                    }
                     try (final Screen winScreen = GameScreenManager.createWinScreen()) {
                         WindowBasedTextGUI gui = new MultiWindowTextGUI(winScreen);
                         winScreen.startScreen();
@@ -1,19 +1,42 @@
 package com.nat.maze.game;
 
 import com.nat.maze.game.entity.Player;
+import com.nat.maze.game.metrics.Metrics;
 
 
 public class GameState {
     public final GameConfig gameConfig;
     public final Map map;
     public final Player player;
+    public final Metrics metrics = new Metrics();
     public boolean done = false;
     public boolean won = false;
     public double clearTime = 0;
 
+    // something other than the player changed and the frame must be redrawn, e.g. the terminal size
+    private boolean dirty = true;
+
     public GameState(GameConfig cfg) {
         gameConfig = cfg;
-        map = new Map(gameConfig.getMapPath());
-        player = new Player(map.playerInitialPosition);
+        metrics.setEnabled(cfg.isMetricsHud() || cfg.getMetricsFile() != null);
+        // playing the same file again reuses the map of the last game
+        map = gameConfig.getMap() != null ? gameConfig.getMap() : MapCache.shared().get(gameConfig.getMapPath());
+        player = new Player(map.getPlayerInitialPosition());
+        player.depth = gameConfig.getViewDistance();
+        // built now rather than during the first frame
+        if (gameConfig.isEmptySpaceSkipping()) map.getDistanceField();
+    }
+
+    public void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Returns whether anything visible changed since the last call, so a new frame is needed.
+     */
+    public boolean consumeDirty() {
+        boolean d = player.consumeChanged() | dirty;
+        dirty = false;
+        return d;
     }
 }
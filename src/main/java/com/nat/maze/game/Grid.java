@@ -0,0 +1,48 @@
+package com.nat.maze.game;
+
+import com.nat.maze.game.entity.Entity;
+
+/**
+ * The cells of a map, as {@link Entity.Type} values.
+ * <p>
+ * Maps are normally held in one array ({@link ArrayGrid}), maps too large for that are paged in
+ * one chunk at a time ({@link ChunkedGrid}). Index based access is only meant for grids whose
+ * cell count fits in an int.
+ */
+public interface Grid {
+    int getWidth();
+
+    int getHeight();
+
+    default int index(int x, int y) {
+        return y * getWidth() + x;
+    }
+
+    default boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < getWidth() && y < getHeight();
+    }
+
+    /**
+     * Returns the raw {@link Entity.Type#value} of the cell at (x, y).
+     */
+    byte get(int x, int y);
+
+    default byte get(int index) {
+        return get(index % getWidth(), index / getWidth());
+    }
+
+    default Entity.Type typeAt(int x, int y) {
+        return Entity.Type.fromValue(get(x, y));
+    }
+
+    default boolean isWall(int x, int y) {
+        return get(x, y) == Entity.Type.Wall.value;
+    }
+
+    /**
+     * Returns whether a ray stops at the cell at (x, y), i.e. it is a wall or the flag.
+     */
+    default boolean isSolid(int x, int y) {
+        return get(x, y) > 0;
+    }
+}
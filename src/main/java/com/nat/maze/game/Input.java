@@ -1,98 +1,156 @@
 package com.nat.maze.game;
 
+import com.googlecode.lanterna.input.InputProvider;
 import com.googlecode.lanterna.input.KeyStroke;
 import com.googlecode.lanterna.input.KeyType;
-import com.googlecode.lanterna.screen.Screen;
-import com.nat.maze.game.entity.Entity;
 import com.nat.maze.game.entity.Player;
+import com.nat.maze.math.Rotation;
 import com.nat.maze.math.Vector2;
 
 import java.io.IOException;
 
+/**
+ * Turns the keys pressed into player movement.
+ * <p>
+ * Every update reads all the keys that arrived since the last one, so keys never queue up behind
+ * the frame rate, and each key counts once per update however often it repeated. Terminals only report
+ * presses, never releases, so a key counts as held for {@link GameConfig#getKeyHoldFrames()} updates after
+ * it was last seen. The moves held at once are added up and checked against the walls in one go.
+ */
 public class Input {
+    private static final int FORWARD = 0;
+    private static final int BACKWARD = 1;
+    private static final int RIGHT = 2;
+    private static final int LEFT = 3;
+    private static final int TURN_RIGHT = 4;
+    private static final int TURN_LEFT = 5;
+    private static final int LOOK_UP = 6;
+    private static final int LOOK_DOWN = 7;
+    private static final int KEYS = 8;
+
     private final GameState gameState;
-    private final Screen screen;
+    private final InputProvider input;
+    private final Rotation rotation = new Rotation();
+
+    // updates each key is still held for, a bit per key that is held in the current update
+    private final int[] held = new int[KEYS];
+    private int pressed = 0;
 
-    public Input(GameState gs, final Screen s) {
+    public Input(GameState gs, final InputProvider in) {
         gameState = gs;
-        screen = s;
+        input = in;
     }
 
     private boolean isEscapePressed(KeyStroke ks) {
         return (ks != null && (ks.getKeyType() == KeyType.Escape || ks.getKeyType() == KeyType.EOF));
     }
 
+    /**
+     * Returns the key bit a key stroke holds, or -1 if it does not move the player.
+     */
+    private static int keyOf(KeyStroke ks) {
+        if (ks.getKeyType() != KeyType.Character) return -1;
+        switch (ks.getCharacter()) {
+            case 'w': return FORWARD;
+            case 's': return BACKWARD;
+            case 'd': return RIGHT;
+            case 'a': return LEFT;
+            case 'l': return TURN_RIGHT;
+            case 'j': return TURN_LEFT;
+            case 'i': return LOOK_UP;
+            case 'k': return LOOK_DOWN;
+            default: return -1;
+        }
+    }
 
-    private boolean isKeyPressed(KeyStroke ks, char c) {
-        return (ks != null && ks.getKeyType() == KeyType.Character && ks.getCharacter() == c);
+    private boolean isHeld(int key) {
+        return (pressed & (1 << key)) != 0;
+    }
+
+    /**
+     * Reads every pending key stroke, updating which keys are held and running the toggles.
+     */
+    private void drain() throws IOException {
+        int hold = Math.max(1, gameState.gameConfig.getKeyHoldFrames());
+        KeyStroke ks;
+        while ((ks = input.pollInput()) != null) {
+            if (isEscapePressed(ks)) {
+                gameState.done = true;
+                return;
+            }
+            int key = keyOf(ks);
+            if (key >= 0) {
+                held[key] = hold;
+                continue;
+            }
+            if (ks.getKeyType() != KeyType.Character) continue;
+            if (ks.getCharacter() == 'p') {
+                // toggle multithreaded rendering
+                GameConfig cfg = gameState.gameConfig;
+                cfg.setParallelRendering(!cfg.isParallelRendering());
+            }
+            if (ks.getCharacter() == 'm') {
+                // toggle the metrics line
+                GameConfig cfg = gameState.gameConfig;
+                cfg.setMetricsHud(!cfg.isMetricsHud());
+                // measured from now on, and kept measuring when the line is hidden again
+                if (cfg.isMetricsHud()) gameState.metrics.setEnabled(true);
+                gameState.markDirty();
+            }
+        }
     }
 
     public void update(double delta) throws IOException {
-        Map m = gameState.map;
+        Grid g = gameState.map.getGrid();
         Player p = gameState.player;
 
         Vector2 dir = p.direction;
         Vector2 pos = p.position;
         Vector2 pln = p.plane;
-        
-        KeyStroke ks = screen.pollInput();
-        if (isEscapePressed(ks)) {
-            gameState.done = true;
+
+        drain();
+        pressed = 0;
+        for (int k = 0; k < KEYS; k++) {
+            if (held[k] > 0) {
+                pressed |= 1 << k;
+                held[k]--;
+            }
         }
+        if (pressed == 0) return;
 
         double dltMvSpd = p.moveSpeed * delta;
         double dltRotSpd = p.rotateSpeed * delta;
+        // the same every update unless the speed or the delta change
+        rotation.setAngle(dltRotSpd);
 
-        //move forwards
-        if (isKeyPressed(ks,'w')) {
-            if (m.getMap()[(int) (pos.x + dir.x * dltMvSpd)][(int) (pos.y)] != Entity.Type.Wall) pos.x += dir.x * dltMvSpd;
-            if (m.getMap()[(int) (pos.x)][(int) (pos.y + dir.y * dltMvSpd)] != Entity.Type.Wall) pos.y += dir.y * dltMvSpd;
-        }
-        //move backwards if no wall behind you
-        if (isKeyPressed(ks,'s')) {
-            if (m.getMap()[(int) (pos.x - dir.x * dltMvSpd)][(int) (pos.y)] != Entity.Type.Wall) pos.x -= dir.x * dltMvSpd;
-            if (m.getMap()[(int) (pos.x)][(int) (pos.y - dir.y * dltMvSpd)] != Entity.Type.Wall) pos.y -= dir.y * dltMvSpd;
-        }
-        // move right
-        if (isKeyPressed(ks,'d')) {
-            if (m.getMap()[(int) (pos.x + pln.x * dltMvSpd)][(int) (pos.y)] != Entity.Type.Wall)
-                pos.x += pln.x * dltMvSpd;
-            if (m.getMap()[(int) (pos.x)][(int) (pos.y + pln.y * dltMvSpd)] != Entity.Type.Wall)
-                pos.y += pln.y * dltMvSpd;
-        }
-        //move left
-        if (isKeyPressed(ks,'a')) {
-            if (m.getMap()[(int) (pos.x - pln.x * dltMvSpd)][(int) (pos.y)] != Entity.Type.Wall)
-                pos.x -= pln.x * dltMvSpd;
-            if (m.getMap()[(int) (pos.x)][(int) (pos.y - pln.y * dltMvSpd)] != Entity.Type.Wall)
-                pos.y -= pln.y * dltMvSpd;
+        // opposite keys cancel out, the rest add up to a single step
+        int forward = (isHeld(FORWARD) ? 1 : 0) - (isHeld(BACKWARD) ? 1 : 0);
+        int right = (isHeld(RIGHT) ? 1 : 0) - (isHeld(LEFT) ? 1 : 0);
+        if (forward != 0 || right != 0) {
+            double dx = (dir.x * forward + pln.x * right) * dltMvSpd;
+            double dy = (dir.y * forward + pln.y * right) * dltMvSpd;
+            //move if no wall is in the way, sliding along it otherwise
+            if (!g.isWall((int) (pos.x + dx), (int) (pos.y))) pos.x += dx;
+            if (!g.isWall((int) (pos.x), (int) (pos.y + dy))) pos.y += dy;
         }
         //rotate to the right
-        if (isKeyPressed(ks,'l')) {
+        if (isHeld(TURN_RIGHT) && !isHeld(TURN_LEFT)) {
             //both camera direction and camera plane must be rotated
-            double oldDirX = dir.x;
-            dir.x = dir.x * Math.cos(-dltRotSpd) - dir.y * Math.sin(-dltRotSpd);
-            dir.y = oldDirX * Math.sin(-dltRotSpd) + dir.y * Math.cos(-dltRotSpd);
-            double oldPlaneX = pln.x;
-            pln.x = pln.x * Math.cos(-dltRotSpd) - pln.y * Math.sin(-dltRotSpd);
-            pln.y = oldPlaneX * Math.sin(-dltRotSpd) + pln.y * Math.cos(-dltRotSpd);
+            rotation.rotateBack(dir);
+            rotation.rotateBack(pln);
         }
         //rotate to the left
-        if (isKeyPressed(ks,'j')) {
+        if (isHeld(TURN_LEFT) && !isHeld(TURN_RIGHT)) {
             //both camera direction and camera plane must be rotated
-            double oldDirX = dir.x;
-            dir.x = dir.x * Math.cos(dltRotSpd) - dir.y * Math.sin(dltRotSpd);
-            dir.y = oldDirX * Math.sin(dltRotSpd) + dir.y * Math.cos(dltRotSpd);
-            double oldPlaneX = pln.x;
-            pln.x = pln.x * Math.cos(dltRotSpd) - pln.y * Math.sin(dltRotSpd);
-            pln.y = oldPlaneX * Math.sin(dltRotSpd) + pln.y * Math.cos(dltRotSpd);
+            rotation.rotate(dir);
+            rotation.rotate(pln);
         }
-        if (isKeyPressed(ks,'i')) {
+        if (isHeld(LOOK_UP)) {
             // look up
             p.pitch += 20 * dltMvSpd;
             if (p.pitch > 200) p.pitch = 200;
         }
-        if (isKeyPressed(ks,'k')) {
+        if (isHeld(LOOK_DOWN)) {
             // look down
             p.pitch -= 20 * dltMvSpd;
             if (p.pitch < -200) p.pitch = -200;
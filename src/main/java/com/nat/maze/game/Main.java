@@ -3,7 +3,11 @@ package com.nat.maze.game;
 import java.io.IOException;
 
 public class Main {
+    /**
+     * @param args Optionally a file the metrics of each game are written to, see {@link GameConfig#setMetricsFile}.
+     */
     public static void main(String[] args) throws IOException {
+        if (args.length > 0) GameScreenManager.cfg.setMetricsFile(args[0]);
         GameScreenManager.start();
     }
 }
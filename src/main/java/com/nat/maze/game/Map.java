@@ -1,64 +1,76 @@
 package com.nat.maze.game;
 
-import com.nat.maze.game.entity.Entity;
+import com.nat.maze.game.generator.Algorithm;
 import com.nat.maze.math.Vector2;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
 public class Map {
-    private Entity.Type[][] map = new Entity.Type[][]{
-
-    };
-    public Entity.Type[][] getMap() {
-        return map;
+    private final Grid grid;
+    public Grid getGrid() {
+        return grid;
     }
 
-    private Vector2 mapSize;
+    // never handed out, maps are shared by every game playing them (see MapCache)
+    private final Vector2 playerInitialPosition;
 
-    public Vector2 playerInitialPosition;
+    // how the map was generated, null if it was not generated from a seed
+    private final Algorithm algorithm;
+    private final long seed;
 
-    public Map(String file) {
-        Charset characterSet = Charset.defaultCharset();
-        Path path = Paths.get(file);
-        try (BufferedReader reader = Files.newBufferedReader(path, characterSet)) {
-            String line = reader.readLine();
-            if (line == null) return;
-            String[] sizes = line.split("\\s+");
-            int w = Integer.parseInt(sizes[0]);
-            int h = Integer.parseInt(sizes[1]);
+    private volatile DistanceField distanceField;
 
-            mapSize = new Vector2(w,h);
+    Map(Grid g, Vector2 spawn) {
+        this(g, spawn, null, 0);
+    }
 
-            map = new Entity.Type[h][w];
+    Map(Grid g, Vector2 spawn, Algorithm a, long s) {
+        grid = g;
+        playerInitialPosition = spawn != null ? new Vector2(spawn) : null;
+        algorithm = a;
+        seed = s;
+    }
 
-            int y = 0;
-            while ((line = reader.readLine()) != null) {
-                String[] values = line.trim().split("\\s+");
+    /**
+     * Returns whether the map can be regenerated from {@link #getAlgorithm()} and {@link #getSeed()}.
+     */
+    public boolean isSeeded() {
+        return algorithm != null;
+    }
 
-                for (int x = 0; x < w; x++) {
-                    Entity.Type t = Entity.Type.fromValue(Integer.parseInt(values[x]));
-                    if (t == Entity.Type.Player) {
-                        playerInitialPosition = new Vector2(x,y);
-                        map[y][x] = Entity.Type.None;
-                        continue;
-                    }
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
 
-                    map[y][x] = t;
-                }
+    public long getSeed() {
+        return seed;
+    }
 
-                y++;
+    /**
+     * Returns the distance field of the map, built on first use and then shared by everyone playing it.
+     * Null for chunked maps, whose field would take as much memory as the map they avoid loading.
+     */
+    DistanceField getDistanceField() {
+        if (!(grid instanceof ArrayGrid)) return null;
+        DistanceField f = distanceField;
+        if (f == null) {
+            synchronized (this) {
+                f = distanceField;
+                if (f == null) distanceField = f = DistanceField.build(grid);
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
+        return f;
+    }
+
+    /**
+     * Returns a copy of where the player starts, or null if the map has no spawn.
+     */
+    public Vector2 getPlayerInitialPosition() {
+        return playerInitialPosition != null ? new Vector2(playerInitialPosition) : null;
     }
 
+    /**
+     * Returns the size of the grid, in a new vector every time.
+     */
     public Vector2 getMapSize() {
-        return mapSize;
+        return new Vector2(grid.getWidth(), grid.getHeight());
     }
 }
@@ -0,0 +1,180 @@
+package com.nat.maze.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Keeps the maps that were played recently, so playing one again neither reads nor allocates it a second time.
+ * <p>
+ * Maps are never changed once loaded, so every game playing one gets the same instance, distance field included.
+ * Files are looked up by path, modification time and size, a file that changed on disk is read again.
+ * <p>
+ * Bounded by the bytes the maps take, the least recently used ones are dropped first. A map is only
+ * loaded once even if many threads ask for it at the same time, and without holding up the others.
+ */
+public final class MapCache {
+    // 256 MB of cells
+    public static final long DEFAULT_CAPACITY = 256L << 20;
+
+    private static final MapCache SHARED = new MapCache(DEFAULT_CAPACITY);
+
+    private static final class Key {
+        final Path path;
+        final long modified;
+        final long size;
+
+        Key(Path p, long m, long n) {
+            path = p;
+            modified = m;
+            size = n;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return path.equals(k.path) && modified == k.modified && size == k.size;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, modified, size);
+        }
+    }
+
+    private static final class Entry {
+        final FutureTask<Map> task;
+        // known once the map is loaded
+        long bytes = 0;
+
+        Entry(FutureTask<Map> t) {
+            task = t;
+        }
+    }
+
+    private final long capacity;
+    // in access order, the eldest entry is the least recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    public MapCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the cache shared by everything in this process.
+     */
+    public static MapCache shared() {
+        return SHARED;
+    }
+
+    public Map get(String file) {
+        try {
+            return get(Paths.get(file));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns the map in {@code path}, reading it only if it is not cached or changed since.
+     */
+    public Map get(Path path) throws IOException {
+        Path p = path.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(p, BasicFileAttributes.class);
+        Key key = new Key(p, attributes.lastModifiedTime().toMillis(), attributes.size());
+        return get(key, () -> MapFile.read(p));
+    }
+
+    /**
+     * Returns the bytes taken by the cached maps.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private Map get(Key key, Callable<Map> loader) throws IOException {
+        Entry e;
+        boolean load = false;
+        synchronized (this) {
+            e = entries.get(key);
+            if (e == null) {
+                e = new Entry(new FutureTask<>(loader));
+                entries.put(key, e);
+                load = true;
+            }
+        }
+
+        // loaded outside of the lock, anyone else asking for the same map waits for this thread
+        if (load) e.task.run();
+        Map map;
+        try {
+            map = e.task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading a map", ex);
+        } catch (ExecutionException ex) {
+            synchronized (this) {
+                entries.remove(key, e);
+            }
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+
+        if (load) {
+            synchronized (this) {
+                // it may have been dropped or cleared while loading, then it is just not cached
+                if (entries.get(key) == e) {
+                    e.bytes = bytesOf(map);
+                    bytes += e.bytes;
+                    evict(e);
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Drops the least recently used maps until the cache fits, never the one that was just loaded.
+     */
+    private void evict(Entry keep) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > capacity && it.hasNext()) {
+            Entry e = it.next();
+            // still loading, its size is not known yet
+            if (e == keep || e.bytes == 0) continue;
+            bytes -= e.bytes;
+            it.remove();
+        }
+    }
+
+    /**
+     * The heap a map takes: a byte per cell and as much again for its distance field,
+     * or the chunks a paged map keeps resident at most.
+     */
+    private static long bytesOf(Map map) {
+        Grid g = map.getGrid();
+        if (g instanceof ChunkedGrid) return (long) ChunkedGrid.DEFAULT_CAPACITY * ChunkedGrid.SIZE * ChunkedGrid.SIZE;
+        return 2L * g.getWidth() * g.getHeight();
+    }
+}
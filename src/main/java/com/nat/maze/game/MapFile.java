@@ -0,0 +1,524 @@
+package com.nat.maze.game;
+
+import com.nat.maze.game.entity.Entity;
+import com.nat.maze.game.generator.Algorithm;
+import com.nat.maze.math.Vector2;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads and writes maps in either of the two supported formats.
+ * <p>
+ * The text format ({@code .map}) is a "width height" line followed by one line per row
+ * of whitespace separated {@link Entity.Type} values.
+ * <p>
+ * The binary format ({@code .mapb}) is a big-endian header
+ * <pre>
+ *     "MAZB" version:int width:int height:int spawnX:int spawnY:int flags:int algorithm:int seed:long
+ * </pre>
+ * followed by the cells packed four to a byte (2 bits each, lowest bits first),
+ * with every row starting on a byte boundary. The player's cell is stored as
+ * {@link Entity.Type#None} since its position is already in the header
+ * (-1, -1 if the map has none).
+ * <p>
+ * Maps generated by {@link MazeGenerator} record the {@link Algorithm} ordinal and seed they were
+ * generated from. Such a map can also be written without its cells ({@code .seed.mapb}), it is then
+ * generated again when it is read. That is slower than reading the cells but stores any size
+ * of maze in one header. Version 1 files have no flags, algorithm or seed.
+ * <p>
+ * The format of a file is detected from its content, not its extension,
+ * and either one may be gzip compressed.
+ * Uncompressed binary maps of more than {@link #CHUNKED_CELLS} cells are not read at once but paged in
+ * by a {@link ChunkedGrid}, as are seed-only maps of that size if their algorithm allows it.
+ */
+public final class MapFile {
+    public static final String TEXT_EXTENSION = ".map";
+    public static final String BINARY_EXTENSION = ".mapb";
+    public static final String SEED_EXTENSION = ".seed" + BINARY_EXTENSION;
+
+    static final int MAGIC = 0x4D415A42; // "MAZB"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 40;
+    static final int V1_HEADER_SIZE = 24;
+
+    // binary maps with more cells than this are read by chunk
+    static final long CHUNKED_CELLS = 1 << 26;
+
+    // header flags
+    static final int SEEDED = 1;
+    static final int NO_CELLS = 2;
+
+    private static final int GZIP_MAGIC = 0x1F8B;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private MapFile() {}
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    public static boolean isMapFile(Path p) {
+        String name = p.getFileName().toString();
+        if (name.endsWith(GZIP_EXTENSION)) name = name.substring(0, name.length() - GZIP_EXTENSION.length());
+        return name.endsWith(TEXT_EXTENSION) || name.endsWith(BINARY_EXTENSION);
+    }
+
+    public static Map read(String file) {
+        try {
+            return read(Paths.get(file));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Map read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4);
+            while (head.hasRemaining() && channel.read(head) >= 0) ;
+            head.flip();
+
+            if (head.remaining() == 4 && head.getInt(0) == MAGIC) {
+                return readBinary(channel);
+            }
+
+            channel.position(0);
+            if (head.remaining() >= 2 && (head.getShort(0) & 0xFFFF) == GZIP_MAGIC) {
+                return readCompressed(new GZIPInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            }
+            return readText(channel);
+        }
+    }
+
+    /**
+     * What a map file holds as far as its header tells, so maps can be listed without reading their cells.
+     */
+    public static final class Info {
+        public final int width;
+        public final int height;
+        // how the map was generated, null if it was not generated from a seed
+        public final Algorithm algorithm;
+        public final long seed;
+        // the file only holds the seed, the map is generated when it is read
+        public final boolean seedOnly;
+
+        Info(int w, int h, Algorithm a, long s, boolean o) {
+            width = w;
+            height = h;
+            algorithm = a;
+            seed = s;
+            seedOnly = o;
+        }
+    }
+
+    /**
+     * Reads the header of a map file, no more than its first {@link #HEADER_SIZE} bytes whatever the format.
+     */
+    public static Info readInfo(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+            while (head.hasRemaining() && channel.read(head) >= 0) ;
+            head.flip();
+
+            if (head.remaining() >= 2 && (head.getShort(0) & 0xFFFF) == GZIP_MAGIC) {
+                // the header of what the file inflates to
+                channel.position(0);
+                InputStream in = new GZIPInputStream(Channels.newInputStream(channel), HEADER_SIZE);
+                byte[] bytes = new byte[HEADER_SIZE];
+                int n = 0;
+                int r;
+                while (n < bytes.length && (r = in.read(bytes, n, bytes.length - n)) > 0) n += r;
+                head = ByteBuffer.wrap(bytes, 0, n);
+            }
+
+            if (head.remaining() >= 4 && head.getInt(0) == MAGIC) {
+                return new Header(head).info();
+            }
+            // text maps start with their size, the header is enough for it
+            ReadableByteChannel text = Channels.newChannel(new ByteArrayInputStream(head.array(), 0, head.limit()));
+            Tokenizer tokens = new Tokenizer(text, HEADER_SIZE);
+            return new Info(tokens.nextInt(), tokens.nextInt(), null, 0, false);
+        }
+    }
+
+    private static Map readCompressed(InputStream in) throws IOException {
+        PushbackInputStream stream = new PushbackInputStream(in, 4);
+        byte[] head = new byte[4];
+        int n = 0;
+        int r;
+        while (n < 4 && (r = stream.read(head, n, 4 - n)) > 0) n += r;
+        stream.unread(head, 0, n);
+
+        if (n == 4 && ByteBuffer.wrap(head).getInt() == MAGIC) {
+            // binary maps are small enough already, they are only inflated in one go
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[BUFFER_SIZE];
+            while ((r = stream.read(chunk)) > 0) out.write(chunk, 0, r);
+            return readBinary(ByteBuffer.wrap(out.toByteArray()));
+        }
+        return readText(Channels.newChannel(stream));
+    }
+
+    static Map readText(ReadableByteChannel channel) throws IOException {
+        Tokenizer tokens = new Tokenizer(channel);
+        int w = tokens.nextInt();
+        int h = tokens.nextInt();
+        if ((long) w * h > ArrayGrid.MAX_CELLS) {
+            throw new IOException("A " + w + "x" + h + " text map is too large to load, convert it to an uncompressed binary map");
+        }
+
+        byte[] cells = new byte[w * h];
+        Vector2 spawn = null;
+
+        for (int y = 0, i = 0; y < h; y++) {
+            for (int x = 0; x < w; x++, i++) {
+                int v = tokens.nextInt();
+                if (v == Entity.Type.Player.value) {
+                    spawn = new Vector2(x, y);
+                    continue;
+                }
+                if (v < 0 || v > Entity.Type.Flag.value) {
+                    throw new IOException("Invalid cell value " + v + " at " + x + ", " + y);
+                }
+                cells[i] = (byte) v;
+            }
+        }
+
+        return new Map(new ArrayGrid(w, h, cells), spawn);
+    }
+
+    /**
+     * Reads a binary map, large ones are paged in from the file by a {@link ChunkedGrid} instead of being read whole.
+     */
+    private static Map readBinary(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(HEADER_SIZE);
+        channel.position(0);
+        while (head.hasRemaining() && channel.read(head) >= 0) ;
+        head.flip();
+        Header header = new Header(head);
+        if (header.withoutCells()) return header.generate();
+
+        int w = header.width;
+        int h = header.height;
+        if ((long) w * h <= CHUNKED_CELLS) {
+            return readBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        if (channel.size() < header.size + (long) rowStride(w) * h) {
+            throw new EOFException("Binary map is truncated");
+        }
+        return new Map(new ChunkedGrid(w, h, new MappedLoader(channel, header.size, w, h)),
+                header.spawn(), header.algorithm, header.seed);
+    }
+
+    static Map readBinary(ByteBuffer buffer) throws IOException {
+        Header header = new Header(buffer);
+        if (header.withoutCells()) return header.generate();
+
+        int w = header.width;
+        int h = header.height;
+        int stride = rowStride(w);
+        if (buffer.remaining() < (long) stride * h) {
+            throw new EOFException("Binary map is truncated");
+        }
+        // only uncompressed files are paged in
+        if ((long) w * h > ArrayGrid.MAX_CELLS) {
+            throw new IOException("A " + w + "x" + h + " compressed map is too large to load, store it uncompressed");
+        }
+
+        byte[] cells = new byte[w * h];
+        for (int y = 0, i = 0; y < h; y++) {
+            int x = 0;
+            for (int b = 0; b < stride; b++) {
+                int packed = buffer.get();
+                for (int k = 0; k < 4 && x < w; k++, x++, i++) {
+                    cells[i] = (byte) ((packed >> (k * 2)) & 3);
+                }
+            }
+        }
+
+        return new Map(new ArrayGrid(w, h, cells), header.spawn(), header.algorithm, header.seed);
+    }
+
+    public static void writeBinary(Map map, String file) throws IOException {
+        Grid grid = map.getGrid();
+        int w = grid.getWidth();
+        int h = grid.getHeight();
+
+        try (LineWriter writer = new LineWriter(open(file), w, h, map.getPlayerInitialPosition(), map.getAlgorithm(), map.getSeed())) {
+            byte[] line = new byte[w];
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int v = grid.get(x, y);
+                    line[x] = (byte) (v == Entity.Type.Player.value ? Entity.Type.None.value : v);
+                }
+                writer.write(line);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Writes only the binary header of a generated map, the cells are generated again from its seed when it is read.
+     */
+    public static void writeSeed(Map map, String file) throws IOException {
+        if (!map.isSeeded()) throw new IllegalArgumentException("Map was not generated from a seed");
+
+        try (FileChannel channel = open(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+            putHeader(buffer, map, NO_CELLS);
+            drain(channel, buffer);
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, Map map, int flags) {
+        Grid grid = map.getGrid();
+        putHeader(buffer, grid.getWidth(), grid.getHeight(), map.getPlayerInitialPosition(), flags, map.getAlgorithm(), map.getSeed());
+    }
+
+    private static void putHeader(ByteBuffer buffer, int w, int h, Vector2 spawn, int flags, Algorithm algorithm, long seed) {
+        if (algorithm != null) flags |= SEEDED;
+
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(w).putInt(h)
+                .putInt(spawn == null ? -1 : (int) spawn.x).putInt(spawn == null ? -1 : (int) spawn.y)
+                .putInt(flags).putInt(algorithm != null ? algorithm.ordinal() : -1).putLong(seed);
+    }
+
+    private static FileChannel open(String file) throws IOException {
+        return FileChannel.open(Paths.get(file),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    static int rowStride(int w) {
+        return (w + 3) >> 2;
+    }
+
+    private static void drain(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes a binary map one line of cells at a time, so a map can be written while it is generated.
+     */
+    static final class LineWriter implements Closeable {
+        private final WritableByteChannel channel;
+        private final int width;
+        private final ByteBuffer buffer;
+
+        /**
+         * @param algorithm How the map was generated from {@code seed}, null if it wasn't.
+         */
+        LineWriter(WritableByteChannel c, int w, int h, Vector2 spawn, Algorithm algorithm, long seed) {
+            channel = c;
+            width = w;
+            buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, rowStride(w)));
+            putHeader(buffer, w, h, spawn, 0, algorithm, seed);
+        }
+
+        /**
+         * Writes the next line of {@link Entity.Type} values, without the player: the spawn is in the header.
+         */
+        void write(byte[] line) throws IOException {
+            int stride = rowStride(width);
+            if (buffer.remaining() < stride) drain(channel, buffer);
+            int x = 0;
+            for (int b = 0; b < stride; b++) {
+                int packed = 0;
+                for (int k = 0; k < 4 && x < width; k++, x++) {
+                    packed |= line[x] << (k * 2);
+                }
+                buffer.put((byte) packed);
+            }
+        }
+
+        /**
+         * Writes whatever is still buffered, after the last line.
+         */
+        void finish() throws IOException {
+            drain(channel, buffer);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class Header {
+        final int size;
+        final int width;
+        final int height;
+        final int spawnX;
+        final int spawnY;
+        final int flags;
+        final Algorithm algorithm;
+        final long seed;
+
+        Header(ByteBuffer buffer) throws IOException {
+            if (buffer.remaining() < V1_HEADER_SIZE || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a binary map");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported binary map version " + version);
+            }
+            if (version > 1 && buffer.remaining() < HEADER_SIZE - 8) {
+                throw new EOFException("Binary map header is truncated");
+            }
+            size = version > 1 ? HEADER_SIZE : V1_HEADER_SIZE;
+            width = buffer.getInt();
+            height = buffer.getInt();
+            if (width < 0 || height < 0) throw new IOException("Invalid map size " + width + "x" + height);
+            spawnX = buffer.getInt();
+            spawnY = buffer.getInt();
+            // -1, -1 is a map without a spawn
+            if ((spawnX != -1 || spawnY != -1) && (spawnX < 0 || spawnY < 0 || spawnX >= width || spawnY >= height)) {
+                throw new IOException("Spawn " + spawnX + "," + spawnY + " is outside of the " + width + "x" + height + " map");
+            }
+
+            if (version > 1) {
+                flags = buffer.getInt();
+                int a = buffer.getInt();
+                seed = buffer.getLong();
+                if ((flags & SEEDED) != 0) {
+                    if (a < 0 || a >= Algorithm.values().length) throw new IOException("Unknown algorithm " + a);
+                    algorithm = Algorithm.values()[a];
+                } else {
+                    algorithm = null;
+                }
+            } else {
+                flags = 0;
+                algorithm = null;
+                seed = 0;
+            }
+        }
+
+        Vector2 spawn() {
+            return spawnX < 0 ? null : new Vector2(spawnX, spawnY);
+        }
+
+        boolean withoutCells() {
+            return (flags & NO_CELLS) != 0;
+        }
+
+        Info info() {
+            return new Info(width, height, algorithm, seed, withoutCells());
+        }
+
+        Map generate() throws IOException {
+            if (algorithm == null || width % 2 == 0 || height % 2 == 0) {
+                throw new IOException("Map without cells can't be generated");
+            }
+            if (algorithm == Algorithm.BinaryTree && (long) width * height > CHUNKED_CELLS) {
+                return MazeGenerator.chunked(width / 2, height / 2, seed);
+            }
+            return new MazeGenerator(width / 2, height / 2, algorithm, seed).toMap();
+        }
+    }
+
+    /**
+     * Unpacks chunks straight out of the file, mapped one band of {@link ChunkedGrid#SIZE} rows at a time
+     * since the whole file can be larger than a single mapping allows.
+     */
+    private static final class MappedLoader implements ChunkedGrid.Loader {
+        private final ByteBuffer[] bands;
+        private final int width;
+        private final int height;
+        private final int stride;
+
+        MappedLoader(FileChannel channel, long offset, int w, int h) throws IOException {
+            width = w;
+            height = h;
+            stride = rowStride(w);
+            bands = new ByteBuffer[(h + ChunkedGrid.SIZE - 1) / ChunkedGrid.SIZE];
+            for (int b = 0; b < bands.length; b++) {
+                int rows = Math.min(ChunkedGrid.SIZE, h - b * ChunkedGrid.SIZE);
+                long start = offset + (long) b * ChunkedGrid.SIZE * stride;
+                bands[b] = channel.map(FileChannel.MapMode.READ_ONLY, start, (long) rows * stride);
+            }
+        }
+
+        @Override
+        public void load(int cx, int cy, byte[] cells) {
+            ByteBuffer band = bands[cy];
+            int x0 = cx * ChunkedGrid.SIZE;
+            int columns = Math.min(ChunkedGrid.SIZE, width - x0);
+            int rows = Math.min(ChunkedGrid.SIZE, height - cy * ChunkedGrid.SIZE);
+
+            for (int r = 0; r < rows; r++) {
+                // x0 is a multiple of 4, so the chunk starts on a byte boundary
+                int base = r * stride + (x0 >> 2);
+                for (int c = 0; c < columns; c++) {
+                    int packed = band.get(base + (c >> 2));
+                    cells[r * ChunkedGrid.SIZE + c] = (byte) ((packed >> ((c & 3) * 2)) & 3);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads non-negative decimal integers separated by ASCII whitespace straight out of a byte buffer.
+     */
+    private static final class Tokenizer {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] bytes;
+        private int pos = 0;
+        private int limit = 0;
+
+        Tokenizer(ReadableByteChannel c) {
+            this(c, BUFFER_SIZE);
+        }
+
+        Tokenizer(ReadableByteChannel c, int bufferSize) {
+            channel = c;
+            buffer = ByteBuffer.allocate(bufferSize);
+            bytes = buffer.array();
+        }
+
+        private boolean fill() throws IOException {
+            buffer.clear();
+            int n;
+            do {
+                n = channel.read(buffer);
+            } while (n == 0);
+            pos = 0;
+            limit = Math.max(n, 0);
+            return n > 0;
+        }
+
+        int nextInt() throws IOException {
+            int c;
+            do {
+                if (pos == limit && !fill()) throw new EOFException("Unexpected end of map file");
+                c = bytes[pos++];
+            } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+
+            if (c < '0' || c > '9') throw new IOException("Unexpected character '" + (char) c + "' in map file");
+
+            int v = 0;
+            while (true) {
+                if (v > (Integer.MAX_VALUE - (c - '0')) / 10) throw new IOException("Number too large in map file");
+                v = v * 10 + (c - '0');
+                if (pos == limit && !fill()) return v;
+                c = bytes[pos];
+                if (c < '0' || c > '9') return v;
+                pos++;
+            }
+        }
+    }
+}
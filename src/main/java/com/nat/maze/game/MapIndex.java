@@ -0,0 +1,337 @@
+package com.nat.maze.game;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * The maps in a directory and what is known about them, for the menu to list without waiting on the disk.
+ * <p>
+ * The directory is walked once on a background thread, reading only the header of each map
+ * (see {@link MapFile#readInfo}), and then kept current with a {@link WatchService}. If the directory
+ * doesn't exist or is removed, the thread ends and the next {@link #start()} looks again.
+ * The last clear time of every map is kept next to the maps in {@link #CLEAR_TIMES_FILE}.
+ */
+public final class MapIndex {
+    public static final String CLEAR_TIMES_FILE = ".clear-times.properties";
+
+    // tell the listener about the maps found so far this often during the first walk
+    private static final int LISTENER_BATCH = 256;
+
+    /**
+     * A map file, as of the last time it changed.
+     */
+    public static final class Entry {
+        private final Path path;
+        private final String name;
+        private final MapFile.Info info;
+        private final long size;
+        private final double clearTime;
+
+        Entry(Path p, String n, MapFile.Info i, long s, double c) {
+            path = p;
+            name = n;
+            info = i;
+            size = s;
+            clearTime = c;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the path relative to the indexed directory.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public MapFile.Info getInfo() {
+            return info;
+        }
+
+        public long getCells() {
+            return (long) info.width * info.height;
+        }
+
+        /**
+         * Returns the size of the file in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Returns how long the last clear of the map took in seconds, or NaN if it was never cleared.
+         */
+        public double getClearTime() {
+            return clearTime;
+        }
+
+        @Override
+        public String toString() {
+            String s = name + "  " + info.width + "x" + info.height;
+            return Double.isNaN(clearTime) ? s : s + String.format("  %.1fs", clearTime);
+        }
+    }
+
+    /**
+     * The orders the maps can be listed in.
+     */
+    public enum Order {
+        Name(Comparator.comparing(Entry::getName)),
+        Cells(Comparator.comparingLong(Entry::getCells).thenComparing(Entry::getName)),
+        FileSize(Comparator.comparingLong(Entry::getSize).thenComparing(Entry::getName)),
+        // maps that were never cleared come last
+        ClearTime(Comparator.comparingDouble(Entry::getClearTime).thenComparing(Entry::getName)),
+        ;
+
+        final Comparator<Entry> comparator;
+
+        Order(Comparator<Entry> c) {
+            comparator = c;
+        }
+    }
+
+    private final Path root;
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    // by name, guarded by itself
+    private final Properties clearTimes = new Properties();
+
+    private Thread thread;
+    private WatchService watcher;
+    private boolean closed = false;
+    private volatile boolean ready = false;
+    private volatile Runnable listener;
+
+    public MapIndex(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Starts indexing in the background, unless it is already running.
+     */
+    public synchronized void start() {
+        if (thread != null || closed) return;
+        ready = false;
+        thread = new Thread(this::run, "map-index");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the directory.
+     */
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (thread != null) thread.interrupt();
+        if (watcher != null) watcher.close();
+    }
+
+    /**
+     * Returns whether the directory was walked completely, before that only some of the maps are listed.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Sets what is run on the index thread whenever maps were added, changed or removed.
+     */
+    public void setListener(Runnable r) {
+        listener = r;
+    }
+
+    /**
+     * Returns the maps whose name contains {@code filter}, ignoring case, in the given order.
+     */
+    public List<Entry> list(Order order, String filter) {
+        String f = filter == null ? "" : filter.toLowerCase(Locale.ROOT);
+        List<Entry> list = new ArrayList<>();
+        for (Entry e : entries.values()) {
+            if (f.isEmpty() || e.name.toLowerCase(Locale.ROOT).contains(f)) list.add(e);
+        }
+        list.sort(order.comparator);
+        return list;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Remembers that the map in {@code path} was just cleared in {@code seconds}.
+     */
+    public void recordClear(Path path, double seconds) throws IOException {
+        Path p = path.toAbsolutePath().normalize();
+        if (!p.startsWith(root)) return;
+        String name = nameOf(p);
+        synchronized (clearTimes) {
+            clearTimes.setProperty(name, Double.toString(seconds));
+            // written next to the old file and moved over it, so a crash never leaves half a file
+            Path tmp = root.resolve(CLEAR_TIMES_FILE + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                clearTimes.store(out, "Last clear time of each map in seconds");
+            }
+            Files.move(tmp, root.resolve(CLEAR_TIMES_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Entry e = entries.get(p);
+        if (e != null) entries.put(p, new Entry(e.path, e.name, e.info, e.size, seconds));
+        changed();
+    }
+
+    private void run() {
+        try {
+            // what is left from a directory that was removed
+            entries.clear();
+            if (!Files.isDirectory(root)) return;
+            loadClearTimes();
+            synchronized (this) {
+                watcher = FileSystems.getDefault().newWatchService();
+            }
+            // registered before the walk, so no map written meanwhile is missed
+            addDirectory(root);
+            ready = true;
+            changed();
+            watch();
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        } catch (IOException e) {
+            System.err.println("Map index of " + root + " failed: " + e);
+        } finally {
+            ready = true;
+            stopped();
+        }
+    }
+
+    private synchronized void stopped() {
+        thread = null;
+        if (watcher == null) return;
+        try {
+            watcher.close();
+        } catch (IOException ignored) {
+        }
+        watcher = null;
+    }
+
+    private void loadClearTimes() throws IOException {
+        Path file = root.resolve(CLEAR_TIMES_FILE);
+        if (!Files.exists(file)) return;
+        synchronized (clearTimes) {
+            try (InputStream in = Files.newInputStream(file)) {
+                clearTimes.load(in);
+            }
+        }
+    }
+
+    /**
+     * Indexes every map in the directory and its subdirectories and watches them all.
+     */
+    private void addDirectory(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.forEach(p -> {
+                if (Files.isDirectory(p)) register(p);
+                else files.add(p);
+            });
+        }
+        int n = 0;
+        for (Path p : files) {
+            update(p);
+            if (++n % LISTENER_BATCH == 0) changed();
+        }
+    }
+
+    private void register(Path dir) {
+        try {
+            dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("Can't watch " + dir + ": " + e);
+        }
+    }
+
+    private void watch() throws IOException, InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key = watcher.take();
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events were lost, start over
+                    entries.clear();
+                    addDirectory(root);
+                    continue;
+                }
+                Path p = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    entries.remove(p);
+                    // a directory, everything that was in it is gone too
+                    entries.keySet().removeIf(e -> e.startsWith(p));
+                } else if (Files.isDirectory(p)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) addDirectory(p);
+                } else {
+                    update(p);
+                }
+            }
+            if (!key.reset() && dir.equals(root)) return;
+            changed();
+        }
+    }
+
+    /**
+     * Reads the header of a file that was found or changed.
+     */
+    private void update(Path p) {
+        if (!MapFile.isMapFile(p)) return;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(p, BasicFileAttributes.class);
+            MapFile.Info info = MapFile.readInfo(p);
+            String name = nameOf(p);
+            entries.put(p, new Entry(p, name, info, attributes.size(), clearTime(name)));
+        } catch (IOException | RuntimeException e) {
+            // not a map after all, or still being written, the next change reads it again
+            entries.remove(p);
+        }
+    }
+
+    private double clearTime(String name) {
+        String s;
+        synchronized (clearTimes) {
+            s = clearTimes.getProperty(name);
+        }
+        if (s == null) return Double.NaN;
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private String nameOf(Path p) {
+        return root.relativize(p).toString().replace('\\', '/');
+    }
+
+    private void changed() {
+        Runnable r = listener;
+        if (r != null) r.run();
+    }
+}
@@ -1,9 +1,26 @@
 package com.nat.maze.game;
 
-import java.io.FileWriter;
+import com.nat.maze.game.entity.Entity;
+import com.nat.maze.game.generator.Algorithm;
+import com.nat.maze.game.generator.BinaryTreeAlgorithm;
+import com.nat.maze.game.generator.Directions;
+import com.nat.maze.game.generator.EllerAlgorithm;
+import com.nat.maze.game.generator.Progress;
+import com.nat.maze.math.Vector2;
+
 import java.io.IOException;
-import java.util.Collections;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
 
 /*
  * hippity hoppity, your code is my property
@@ -12,86 +29,227 @@ import java.util.Arrays;
 public class MazeGenerator {
     private final int x;
     private final int y;
-    private final int[][] maze;
+    private final Algorithm algorithm;
+    private final long seed;
+    private final byte[] maze;
 
     public MazeGenerator(int x, int y) {
+        this(x, y, Algorithm.Backtracker);
+    }
+
+    public MazeGenerator(int x, int y, Algorithm algorithm) {
+        this(x, y, algorithm, ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * The same size, algorithm and seed always give the same maze.
+     */
+    public MazeGenerator(int x, int y, Algorithm algorithm, long seed) {
+        this(x, y, algorithm, seed, Progress.NONE);
+    }
+
+    /**
+     * Generates a maze that can be watched and cancelled, see {@link Progress}.
+     */
+    public MazeGenerator(int x, int y, Algorithm algorithm, long seed, Progress progress) {
         this.x = x;
         this.y = y;
-        maze = new int[this.x][this.y];
-        generateMaze(0, 0);
-    }
-
-    private void generateMaze(int cx, int cy) {
-        DIR[] dirs = DIR.values();
-        Collections.shuffle(Arrays.asList(dirs));
-        for (DIR dir : dirs) {
-            int nx = cx + dir.dx;
-            int ny = cy + dir.dy;
-            if (between(nx, x) && between(ny, y)
-                    && (maze[nx][ny] == 0)) {
-                maze[cx][cy] |= dir.bit;
-                maze[nx][ny] |= dir.opposite.bit;
-                generateMaze(nx, ny);
-            }
+        this.algorithm = algorithm;
+        this.seed = seed;
+        if (x < 0 || y < 0) throw new IllegalArgumentException("Invalid maze size " + x + "x" + y);
+        if ((long) x * y > ArrayGrid.MAX_CELLS) {
+            throw new IllegalArgumentException("A " + x + "x" + y + " maze doesn't fit in an array, use streamToFile or chunked");
         }
+        maze = new byte[this.x * this.y];
+        algorithm.create().generate(maze, this.x, this.y, new SplittableRandom(seed), progress);
+    }
+
+    public int getWidth() {
+        return x;
+    }
+
+    public int getHeight() {
+        return y;
     }
 
-    private static boolean between(int v, int upper) {
-        return (v >= 0) && (v < upper);
+    public Algorithm getAlgorithm() {
+        return algorithm;
     }
 
-    private enum DIR {
-        N(1, 0, -1), S(2, 0, 1), E(4, 1, 0), W(8, -1, 0);
-        private final int bit;
-        private final int dx;
-        private final int dy;
-        private DIR opposite;
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Generates a maze with Eller's algorithm and writes each row to the file as soon as it is done,
+     * so only O(x) memory is used however large y is.
+     */
+    public static void streamToFile(int x, int y, String filePath) throws IOException {
+        streamToFile(x, y, ThreadLocalRandom.current().nextLong(), filePath);
+    }
 
-        // use the static initializer to resolve forward references
-        static {
-            N.opposite = S;
-            S.opposite = N;
-            E.opposite = W;
-            W.opposite = E;
+    /**
+     * Like {@link #streamToFile(int, int, String)}, the maze is the one of {@code new MazeGenerator(x, y, Eller, seed)}.
+     * A binary map (".mapb", optionally gzipped) records the seed in its header, the text format has no room for it.
+     */
+    public static void streamToFile(int x, int y, long seed, String filePath) throws IOException {
+        String name = filePath.endsWith(MapFile.GZIP_EXTENSION)
+                ? filePath.substring(0, filePath.length() - MapFile.GZIP_EXTENSION.length()) : filePath;
+        if (name.endsWith(MapFile.BINARY_EXTENSION)) {
+            streamBinary(x, y, seed, filePath);
+            return;
         }
 
-        private DIR(int bit, int dx, int dy) {
-            this.bit = bit;
-            this.dx = dx;
-            this.dy = dy;
+        try (MazeWriter writer = new MazeWriter(openChannel(filePath), x, y)) {
+            writer.writeHeader();
+            new EllerAlgorithm().generate(x, y, new SplittableRandom(seed), (row, cells) -> {
+                try {
+                    writer.writeRow(cells, 0);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-    };
+    }
 
-    public void writeToFile(String filePath) {
-        try (FileWriter writer = new FileWriter(filePath)) {
-            writer.write(String.format("%d %d\n", x * 2 + 1, y * 2 + 1));
-            for (int i = 0; i < y; i++) {
-                // draw the north edge
+    // the same layout as toMap, two lines of the map for each row of the maze and a wall below
+    private static void streamBinary(int x, int y, long seed, String filePath) throws IOException {
+        int w = x * 2 + 1;
+        byte[] north = new byte[w];
+        byte[] middle = new byte[w];
+        try (MapFile.LineWriter writer = new MapFile.LineWriter(openChannel(filePath), w, y * 2 + 1,
+                new Vector2(1, 1), Algorithm.Eller, seed)) {
+            new EllerAlgorithm().generate(x, y, new SplittableRandom(seed), (i, row) -> {
+                Arrays.fill(north, (byte) Entity.Type.Wall.value);
+                Arrays.fill(middle, (byte) Entity.Type.Wall.value);
                 for (int j = 0; j < x; j++) {
-                    writer.write((maze[j][i] & 1) == 0 ? "2 2 " : "2 0 ");
+                    int mx = j * 2 + 1;
+                    middle[mx] = (byte) Entity.Type.None.value;
+                    if ((row[j] & Directions.N) != 0) north[mx] = (byte) Entity.Type.None.value;
+                    if ((row[j] & Directions.W) != 0) middle[mx - 1] = (byte) Entity.Type.None.value;
                 }
-                writer.write("2\n");
-                // draw the west edge
-                for (int j = 0; j < x; j++) {
-                    if (i == 0 && j == 0) {
-                        writer.write("2 1 ");
-                        continue;
-                    }
-                    if (i == y - 1 && j == x - 1) {
-                        writer.write((maze[j][i] & 8) == 0 ? "2 3 " : "0 3 ");
-                        continue;
-                    }
-                    writer.write((maze[j][i] & 8) == 0 ? "2 0 " : "0 0 ");
+                // not on the spawn of a single cell maze
+                if (i == y - 1 && (x > 1 || y > 1)) middle[w - 2] = (byte) Entity.Type.Flag.value;
+                try {
+                    writer.write(north);
+                    writer.write(middle);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-                writer.write("2\n");
+            });
+            Arrays.fill(north, (byte) Entity.Type.Wall.value);
+            writer.write(north);
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes the maze in the text map format, gzip compressed if the path ends in ".gz".
+     */
+    public void writeToFile(String filePath) throws IOException {
+        try (MazeWriter writer = new MazeWriter(openChannel(filePath), x, y)) {
+            writer.writeHeader();
+            for (int i = 0; i < y; i++) {
+                writer.writeRow(maze, i * x);
             }
-            // draw the bottom line
+            writer.finish();
+        }
+    }
+
+    /**
+     * Builds the map of the maze directly in memory, laid out exactly as {@link #writeToFile} would write it.
+     */
+    public Map toMap() {
+        if ((2L * x + 1) * (2L * y + 1) > ArrayGrid.MAX_CELLS) {
+            throw new IllegalArgumentException("The map of a " + x + "x" + y + " maze doesn't fit in an array, see chunked() for one that is paged in");
+        }
+        int w = x * 2 + 1;
+        int h = y * 2 + 1;
+        byte[] cells = new byte[w * h];
+        Arrays.fill(cells, (byte) Entity.Type.Wall.value);
+
+        for (int i = 0; i < y; i++) {
             for (int j = 0; j < x; j++) {
-                writer.write("2 2 ");
+                int c = maze[i * x + j];
+                int mx = j * 2 + 1;
+                int my = i * 2 + 1;
+                cells[my * w + mx] = (byte) Entity.Type.None.value;
+                if ((c & Directions.N) != 0) cells[(my - 1) * w + mx] = (byte) Entity.Type.None.value;
+                if ((c & Directions.W) != 0) cells[my * w + mx - 1] = (byte) Entity.Type.None.value;
+            }
+        }
+        // the writer leaves the flag out of a single cell maze, it would be on the spawn
+        if (x > 0 && y > 0 && (x > 1 || y > 1)) cells[(h - 2) * w + w - 2] = (byte) Entity.Type.Flag.value;
+
+        return new Map(new ArrayGrid(w, h, cells), new Vector2(1, 1), algorithm, seed);
+    }
+
+    /**
+     * Builds the map of a {@link Algorithm#BinaryTree} maze without generating it, each chunk of the map is
+     * generated when it is first read. The map is the same as {@code new MazeGenerator(x, y, BinaryTree, seed).toMap()}
+     * but its size is only limited by the chunk table.
+     */
+    public static Map chunked(int x, int y, long seed) {
+        Grid grid = new ChunkedGrid(x * 2 + 1, y * 2 + 1, new BinaryTreeLoader(x * 2 + 1, y * 2 + 1, seed));
+        return new Map(grid, new Vector2(1, 1), Algorithm.BinaryTree, seed);
+    }
+
+    private static final class BinaryTreeLoader implements ChunkedGrid.Loader {
+        private static final byte WALL = (byte) Entity.Type.Wall.value;
+        private static final byte NONE = (byte) Entity.Type.None.value;
+
+        private final int width;
+        private final int height;
+        private final long key;
+
+        BinaryTreeLoader(int w, int h, long seed) {
+            width = w;
+            height = h;
+            key = BinaryTreeAlgorithm.key(seed);
+        }
+
+        @Override
+        public void load(int cx, int cy, byte[] cells) {
+            int x0 = cx * ChunkedGrid.SIZE;
+            int y0 = cy * ChunkedGrid.SIZE;
+            int columns = Math.min(ChunkedGrid.SIZE, width - x0);
+            int rows = Math.min(ChunkedGrid.SIZE, height - y0);
+
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    cells[r * ChunkedGrid.SIZE + c] = cell(x0 + c, y0 + r);
+                }
             }
-            writer.write("2\n");
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+
+        // in the bottom right cell, unless that is the spawn
+        private boolean isFlag(int mx, int my) {
+            return mx == width - 2 && my == height - 2 && (width > 3 || height > 3);
+        }
+
+        // the same layout as toMap: maze cell (i, j) is map cell (2i + 1, 2j + 1), the cells between them are passages or walls
+        private byte cell(int mx, int my) {
+            if (mx == 0 || my == 0 || mx == width - 1 || my == height - 1) return WALL;
+            boolean oddX = (mx & 1) != 0;
+            boolean oddY = (my & 1) != 0;
+            if (oddX && oddY) return isFlag(mx, my) ? (byte) Entity.Type.Flag.value : NONE;
+            if (!oddX && !oddY) return WALL;
+            // the passage west of or north of maze cell (mx / 2, my / 2)
+            int open = oddY ? Directions.W : Directions.N;
+            return BinaryTreeAlgorithm.carve(key, mx / 2, my / 2) == open ? NONE : WALL;
+        }
+    }
+
+    private static WritableByteChannel openChannel(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (filePath.endsWith(".gz")) {
+            return Channels.newChannel(new GZIPOutputStream(Files.newOutputStream(path), 1 << 16));
+        }
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package com.nat.maze.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes maze rows into the text map format.
+ * Rows are written into a reusable buffer which is only handed to the channel when it is full,
+ * so a maze can be written one row at a time without ever holding all of it.
+ * <p>
+ * A maze of {@code width * height} cells becomes a map of {@code (2 * width + 1) * (2 * height + 1)},
+ * with the player in the top left cell and the flag in the bottom right one.
+ */
+public final class MazeWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final int width;
+    private final int height;
+    private final ByteBuffer buffer;
+    private int nextRow = 0;
+
+    public MazeWriter(WritableByteChannel c, int w, int h) {
+        channel = c;
+        width = w;
+        height = h;
+        buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, rowBytes()));
+    }
+
+    // two map lines of 2 * width + 1 values, each followed by a space or a newline
+    private int rowBytes() {
+        return 2 * (4 * width + 2);
+    }
+
+    public void writeHeader() throws IOException {
+        putInt(width * 2 + 1);
+        buffer.put((byte) ' ');
+        putInt(height * 2 + 1);
+        buffer.put((byte) '\n');
+    }
+
+    /**
+     * Writes the next row of the maze.
+     *
+     * @param cells  Cells holding {@link com.nat.maze.game.generator.Directions} bits.
+     * @param offset Index of the first cell of the row in {@code cells}.
+     */
+    public void writeRow(byte[] cells, int offset) throws IOException {
+        if (buffer.remaining() < rowBytes()) flush();
+
+        int i = nextRow++;
+
+        // draw the north edge
+        for (int j = 0; j < width; j++) {
+            put('2', (cells[offset + j] & 1) == 0 ? '2' : '0');
+        }
+        buffer.put((byte) '2').put((byte) '\n');
+        // draw the west edge
+        for (int j = 0; j < width; j++) {
+            boolean open = (cells[offset + j] & 8) != 0;
+            if (i == 0 && j == 0) {
+                put('2', '1');
+            } else if (i == height - 1 && j == width - 1) {
+                put(open ? '0' : '2', '3');
+            } else {
+                put(open ? '0' : '2', '0');
+            }
+        }
+        buffer.put((byte) '2').put((byte) '\n');
+    }
+
+    /**
+     * Writes the bottom line after the last row and flushes everything to the channel.
+     */
+    public void finish() throws IOException {
+        if (buffer.remaining() < rowBytes()) flush();
+        for (int j = 0; j < width; j++) {
+            put('2', '2');
+        }
+        buffer.put((byte) '2').put((byte) '\n');
+        flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void put(char a, char b) {
+        buffer.put((byte) a).put((byte) ' ').put((byte) b).put((byte) ' ');
+    }
+
+    private void putInt(int v) {
+        int start = buffer.position();
+        do {
+            buffer.put((byte) ('0' + v % 10));
+            v /= 10;
+        } while (v > 0);
+        // digits were written least significant first
+        for (int a = start, b = buffer.position() - 1; a < b; a++, b--) {
+            byte t = buffer.get(a);
+            buffer.put(a, buffer.get(b));
+            buffer.put(b, t);
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
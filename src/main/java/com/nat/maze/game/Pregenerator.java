@@ -0,0 +1,116 @@
+package com.nat.maze.game;
+
+import com.nat.maze.game.generator.Algorithm;
+import com.nat.maze.game.generator.Progress;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the next random maze in the background, so it is ready by the time it is asked for.
+ * <p>
+ * One maze is prepared at a time, on a thread of its own at low priority so a game being played
+ * keeps the processor. Asking for a different size or algorithm cancels the maze being prepared.
+ */
+public final class Pregenerator {
+    /**
+     * A maze being generated.
+     */
+    public static final class Job {
+        private final int width;
+        private final int height;
+        private final Algorithm algorithm;
+        private final Progress progress = new Progress();
+        private final CompletableFuture<Map> result = new CompletableFuture<>();
+
+        private Job(int w, int h, Algorithm a) {
+            width = w;
+            height = h;
+            algorithm = a;
+        }
+
+        boolean matches(int w, int h, Algorithm a) {
+            return width == w && height == h && algorithm == a;
+        }
+
+        /**
+         * Returns the part of the maze generated so far, from 0 to 1.
+         */
+        public double getProgress() {
+            return result.isDone() ? 1 : progress.getFraction();
+        }
+
+        /**
+         * Completes with the map once it is generated, along with its distance field.
+         */
+        public CompletableFuture<Map> getResult() {
+            return result;
+        }
+
+        public boolean isReady() {
+            return result.isDone() && !result.isCompletedExceptionally();
+        }
+
+        /**
+         * Stops the generation, the result completes with a {@link java.util.concurrent.CancellationException}.
+         */
+        public void cancel() {
+            progress.cancel();
+            result.cancel(false);
+        }
+
+        private void run() {
+            if (result.isDone()) return;
+            try {
+                Map map = new MazeGenerator(width, height, algorithm, ThreadLocalRandom.current().nextLong(), progress).toMap();
+                // the game would build it before the first frame otherwise
+                map.getDistanceField();
+                result.complete(map);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "maze-pregenerator");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // the maze being prepared, or the one that is ready
+    private Job next;
+
+    /**
+     * Starts generating a maze of this size unless one is already being prepared or ready.
+     */
+    public synchronized void prepare(int width, int height, Algorithm algorithm) {
+        if (next != null && next.matches(width, height, algorithm) && !next.result.isCompletedExceptionally()) return;
+        if (next != null) next.cancel();
+        Job job = new Job(width, height, algorithm);
+        next = job;
+        executor.execute(job::run);
+    }
+
+    /**
+     * Returns the prepared maze of this size, starting it now if there is none. The job may still be running,
+     * in which case {@link Job#getProgress()} tells how long it is going to take.
+     */
+    public synchronized Job take(int width, int height, Algorithm algorithm) {
+        prepare(width, height, algorithm);
+        Job job = next;
+        next = null;
+        return job;
+    }
+
+    /**
+     * Cancels the maze being prepared, if any.
+     */
+    public synchronized void cancel() {
+        if (next != null) next.cancel();
+        next = null;
+    }
+}
@@ -1,73 +1,177 @@
 package com.nat.maze.game;
 
 import com.googlecode.lanterna.TerminalSize;
-import com.googlecode.lanterna.graphics.TextGraphics;
+import com.googlecode.lanterna.TextCharacter;
 import com.googlecode.lanterna.screen.Screen;
 import com.nat.maze.game.entity.Entity;
 import com.nat.maze.game.entity.Player;
+import com.nat.maze.game.metrics.Metrics;
 import com.nat.maze.math.Vector2;
+import com.nat.maze.math.VectorBatch;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public final class Renderer {
+    // wallType of a column whose ray reached the far plane without hitting anything
+    private static final byte FOG = -1;
+
     private final Screen screen;
-    private final TextGraphics textGraphics;
+    private final TerminalSize headlessSize;
     private final GameState gameState;
+    private final Metrics metrics;
+
+    // per column results of the current frame
+    private double[] wallDistance = new double[0];
+    private byte[] wallType = new byte[0];
+    private int[] raySteps = new int[0];
+
+    // x-coordinate in camera space of each column, and the ray direction of each column of the current frame
+    private double[] cameraX = new double[0];
+    private double[] rayX = new double[0];
+    private double[] rayY = new double[0];
+
+    // the tasks that cast the columns in parallel, built on first use for the current size
+    private ColumnTask columnTasks;
+
+    // row-major characters of the frame being drawn
+    private int columns = 0;
+    private int rows = 0;
+    private char[] frame = new char[0];
+
+    // floor shade of each row, valid for floorPitch
+    private char[] floorShade = new char[0];
+    private double floorPitch = 0;
+
+    // every printable ASCII character and the block elements the walls are shaded with,
+    // shared by all renderers so pushing a cell does not allocate
+    private static final TextCharacter[] GLYPHS = new TextCharacter[128];
+    private static final char BLOCKS = 0x2580;
+    private static final TextCharacter[] BLOCK_GLYPHS = new TextCharacter[32];
+
+    static {
+        for (char c = ' '; c < 127; c++) GLYPHS[c] = TextCharacter.DEFAULT_CHARACTER.withCharacter(c);
+        for (int i = 0; i < BLOCK_GLYPHS.length; i++) {
+            BLOCK_GLYPHS[i] = TextCharacter.DEFAULT_CHARACTER.withCharacter((char) (BLOCKS + i));
+        }
+    }
+
     public Renderer(GameState gs, Screen s) {
         gameState = gs;
+        metrics = gs.metrics;
         screen = s;
-        textGraphics = screen.newTextGraphics();
+        headlessSize = null;
     }
 
-    private void renderFloor() {
+    /**
+     * Creates a renderer that only draws into its framebuffer, see {@link #frameHash()}.
+     */
+    public Renderer(GameState gs, TerminalSize size) {
+        gameState = gs;
+        metrics = gs.metrics;
+        screen = null;
+        headlessSize = size;
+    }
+
+    /**
+     * Returns a hash of the characters of the last frame, to compare runs without a screen.
+     */
+    public int frameHash() {
+        return Arrays.hashCode(frame);
+    }
+
+    private void updateFloorShades() {
         final Player p = gameState.player;
+        if (floorShade.length == rows && floorPitch == p.pitch) return;
+        if (floorShade.length != rows) floorShade = new char[rows];
+        floorPitch = p.pitch;
 
-        TerminalSize size = screen.getTerminalSize();
-
-        for (int x = 0; x < size.getColumns(); x++) {
-            //floor casting
-            for (int y = 0; y < size.getRows(); ++y) {
-                // whether this section is floor or ceiling
-                int floor_high = (int) (size.getRows() / 2 + p.pitch);
-                boolean is_floor = y > floor_high;
-
-                char shade;
-
-                if (is_floor) {
-                    // floor
-                    double b = (double) (size.getRows() - y) / (size.getRows() - floor_high);
-                    if (b < 0.25) shade = '#';
-                    else if (b < 0.5) shade = 'x';
-                    else if (b < 0.75) shade = '-';
-                    else if (b < 0.9) shade = '.';
-                    else shade = ' ';
-                    textGraphics.setCharacter(x, y, shade);
-                }
+        // whether a row is floor or ceiling
+        int floor_high = (int) (rows / 2 + p.pitch);
+
+        for (int y = 0; y < rows; ++y) {
+            char shade = ' ';
 
+            if (y > floor_high) {
+                // floor
+                double b = (double) (rows - y) / (rows - floor_high);
+                if (b < 0.25) shade = '#';
+                else if (b < 0.5) shade = 'x';
+                else if (b < 0.75) shade = '-';
+                else if (b < 0.9) shade = '.';
+                else shade = ' ';
             }
+
+            floorShade[y] = shade;
         }
     }
 
-    public void render(double delta) throws IOException {
-        TerminalSize size = screen.getTerminalSize();
+    private void renderFloor() {
+        // the floor shade only depends on the row, so whole rows are filled at once
+        updateFloorShades();
+        for (int y = 0; y < rows; y++) {
+            Arrays.fill(frame, y * columns, (y + 1) * columns, floorShade[y]);
+        }
+    }
 
-        final Map m = gameState.map;
-        final Player p = gameState.player;
+    private void resize(TerminalSize size) {
+        if (size.getColumns() == columns && size.getRows() == rows) return;
+        columns = size.getColumns();
+        rows = size.getRows();
+        wallDistance = new double[columns];
+        wallType = new byte[columns];
+        raySteps = new int[columns];
+        cameraX = new double[columns];
+        rayX = new double[columns];
+        rayY = new double[columns];
+        for (int x = 0; x < columns; x++) {
+            cameraX[x] = 2 * x / (double) columns - 1;
+        }
+        columnTasks = null;
+        frame = new char[columns * rows];
+    }
 
-        final Vector2 pos = p.position;
-        final Vector2 dir = p.direction;
-        final Vector2 pln = p.plane;
+    private static TextCharacter glyph(char c) {
+        TextCharacter g = null;
+        if (c < GLYPHS.length) g = GLYPHS[c];
+        else if (c - BLOCKS >= 0 && c - BLOCKS < BLOCK_GLYPHS.length) g = BLOCK_GLYPHS[c - BLOCKS];
+        return g != null ? g : TextCharacter.DEFAULT_CHARACTER.withCharacter(c);
+    }
 
-        TerminalSize newSize = screen.doResizeIfNecessary();
-        if (newSize != null) size = newSize;
+    /**
+     * Pushes the cells that changed since the last frame to the screen.
+     * The screen's own back buffer tells what is there, the glyphs are shared so comparing references is enough.
+     */
+    private void present() {
+        for (int y = 0, i = 0; y < rows; y++) {
+            for (int x = 0; x < columns; x++, i++) {
+                TextCharacter g = glyph(frame[i]);
+                if (screen.getBackCharacter(x, y) != g) screen.setCharacter(x, y, g);
+            }
+        }
+    }
 
-        renderFloor();
+    /**
+     * Casts the rays of columns [from, to) and stores the distance to and the type of the cell they hit.
+     * Only reads shared state, so disjoint column ranges can be cast concurrently.
+     */
+    private void cast(int from, int to) {
+        final Grid grid = gameState.map.getGrid();
+        final DistanceField field = gameState.gameConfig.isEmptySpaceSkipping() ? gameState.map.getDistanceField() : null;
+        final Player p = gameState.player;
 
-        for (int x = 0; x < size.getColumns(); x++) {
-            //calculate ray position and direction
-            double cameraX = 2 * x / (double) size.getColumns() - 1; //x-coordinate in camera space
-            double rayDirX = dir.x + pln.x * cameraX;
-            double rayDirY = dir.y + pln.y * cameraX;
+        final Vector2 pos = p.position;
+        //nothing beyond the far plane would be shaded anyway, so rays are not cast any further
+        final double far = p.depth;
+        final int width = grid.getWidth();
+        final int height = grid.getHeight();
+
+        for (int x = from; x < to; x++) {
+            //ray direction, computed for all columns at once by render
+            double rayDirX = rayX[x];
+            double rayDirY = rayY[x];
             //which box of the map we're in
             int mapX = (int) pos.x;
             int mapY = (int) pos.y;
@@ -89,13 +193,12 @@ public final class Renderer {
             double deltaDistX = (rayDirX == 0) ? 1e30 : Math.abs(1 / rayDirX);
             double deltaDistY = (rayDirY == 0) ? 1e30 : Math.abs(1 / rayDirY);
 
-            double pWallDist;
-
             //what direction to step in x or y-direction (either +1 or -1)
             int stepX;
             int stepY;
 
-            int hit = 0; //was there a wall hit?
+            int hit = 0; //was there a wall hit? -1 if the ray reached the far plane, 2 if it left the map
+            int steps = 0;
             int side = 0; //was a NS or an EW wall hit?
             //calculate step and initial sideDist
             if (rayDirX < 0) {
@@ -114,6 +217,26 @@ public final class Renderer {
             }
             //perform DDA
             while (hit == 0) {
+                steps++;
+                //every cell within r of this one is empty, so jump to the last cell of that square the ray crosses
+                int r = field != null ? field.get(mapX, mapY) - 1 : 0;
+                if (r > 0) {
+                    double exitX = sideDistX + r * deltaDistX;
+                    double exitY = sideDistY + r * deltaDistY;
+                    double exit = exitX < exitY ? exitX : exitY;
+                    //deltaDist is 1 / |rayDir|, so multiplying by |rayDir| turns a length into cells
+                    int nx = crossings((exit - sideDistX) * Math.abs(rayDirX), r);
+                    int ny = crossings((exit - sideDistY) * Math.abs(rayDirY), r);
+                    mapX += nx * stepX;
+                    sideDistX += nx * deltaDistX;
+                    mapY += ny * stepY;
+                    sideDistY += ny * deltaDistY;
+                }
+                //the distance to the next square is the perpendicular distance of anything in it
+                if ((sideDistX < sideDistY ? sideDistX : sideDistY) > far) {
+                    hit = -1;
+                    break;
+                }
                 //jump to next map square, either in x-direction, or in y-direction
                 if (sideDistX < sideDistY) {
                     sideDistX += deltaDistX;
@@ -125,8 +248,16 @@ public final class Renderer {
                     side = 1;
                 }
 
-                //Check if ray has hit a wall
-                if (m.getMap()[mapX][mapY].value > 0) hit = 1;
+                //the edge of an open map stops the ray like a wall
+                if (mapX < 0 || mapY < 0 || mapX >= width || mapY >= height) hit = 2;
+                //Check if ray has hit a wall, the distance field is 0 exactly at the solid cells
+                else if (field != null ? field.get(mapX, mapY) == 0 : grid.isSolid(mapX, mapY)) hit = 1;
+            }
+            raySteps[x] = steps;
+            if (hit < 0) {
+                wallDistance[x] = far;
+                wallType[x] = FOG;
+                continue;
             }
             //Calculate distance projected on camera direction. This is the shortest distance from the point where the wall is
             //hit to the camera plane. Euclidean to center camera point would give fisheye effect!
@@ -134,17 +265,63 @@ public final class Renderer {
             //for size == 1, but can be simplified to the code below thanks to how sideDist and deltaDist are computed:
             //because they were left scaled to |rayDir|. sideDist is the entire length of the ray above after the multiple
             //steps, but we subtract deltaDist once because one step more into the wall was taken above.
-            if (side == 0) pWallDist = (sideDistX - deltaDistX);
-            else pWallDist = (sideDistY - deltaDistY);
+            if (side == 0) wallDistance[x] = (sideDistX - deltaDistX);
+            else wallDistance[x] = (sideDistY - deltaDistY);
+
+            wallType[x] = hit == 2 ? (byte) Entity.Type.Wall.value : grid.get(mapX, mapY);
+        }
+    }
+
+    /**
+     * Returns how many cell sides a ray crosses within {@code cells} cells of its next one, at most {@code max}.
+     */
+    private static int crossings(double cells, int max) {
+        if (cells <= 0) return 0;
+        if (cells >= max) return max;
+        int n = (int) cells;
+        return n < cells ? n + 1 : n;
+    }
+
+    public boolean isParallel() {
+        return gameState.gameConfig.isParallelRendering();
+    }
+
+    public void render(double delta) throws IOException {
+        final Player p = gameState.player;
+
+        resize(screen != null ? screen.getTerminalSize() : headlessSize);
+
+        long start = System.nanoTime();
+        renderFloor();
+        long floorDone = System.nanoTime();
+        metrics.record(Metrics.Stage.Floor, floorDone - start);
+
+        //calculate ray directions: dir + plane * cameraX
+        VectorBatch.addScaled(p.direction, p.plane, cameraX, rayX, rayY, 0, columns);
+
+        if (isParallel() && columns > ColumnTask.THRESHOLD) {
+            if (columnTasks == null) columnTasks = new ColumnTask(0, columns);
+            columnTasks.reset();
+            ForkJoinPool.commonPool().invoke(columnTasks);
+        } else {
+            cast(0, columns);
+        }
+        long castDone = System.nanoTime();
+        metrics.record(Metrics.Stage.Cast, castDone - floorDone);
+        metrics.recordRays(raySteps, columns);
+
+        for (int x = 0; x < columns; x++) {
+            double pWallDist = wallDistance[x];
 
             //Calculate height of line to draw on screen
-            int lineHeight = (int) (size.getRows() / pWallDist);
+            int lineHeight = (int) (rows / pWallDist);
 
             //calculate lowest and highest pixel to fill in current stripe
-            int drawStart = (int) (-lineHeight / 2 + p.pitch + size.getRows() / 2);
+            int drawStart = (int) (-lineHeight / 2 + p.pitch + rows / 2);
             if (drawStart < 0) drawStart = 0;
-            int drawEnd = (int) (lineHeight / 2 + p.pitch + size.getRows() / 2);
-            if (drawEnd >= size.getRows()) drawEnd = size.getRows();
+            if (drawStart > rows) drawStart = rows;
+            int drawEnd = (int) (lineHeight / 2 + p.pitch + rows / 2);
+            if (drawEnd >= rows) drawEnd = rows - 1;
 
             //choose wall shade
             char shade = ' ';
@@ -165,19 +342,75 @@ public final class Renderer {
                 shade = 0x2588;
             }
 
-            if (m.getMap()[mapX][mapY] == Entity.Type.Flag) {
+            if (wallType[x] == Entity.Type.Flag.value) {
                 shade = '/';
             }
 
+            if (wallType[x] == FOG) {
+                shade = ' ';
+            }
+
             //clear the ceiling
-            textGraphics.drawLine(x, 0, x, drawStart - 1, ' ');
+            int i = x;
+            for (int y = 0; y < drawStart; y++, i += columns) frame[i] = ' ';
 
             //draw the pixels of the stripe as a vertical line
-            textGraphics.drawLine(x, drawStart, x, drawEnd, shade);
+            for (int y = drawStart; y <= drawEnd; y++, i += columns) frame[i] = shade;
+
+            //the floor below the stripe was already drawn by renderFloor
+        }
 
-            //clear the floor (not needed because the floor is redrawn above anyways)
-            //textGraphics.drawLine(x, drawEnd, x, size.getRows(), ' ');
+        if (gameState.gameConfig.isMetricsHud() && rows > 0) {
+            CharSequence line = metrics.hudLine();
+            int n = Math.min(line.length(), columns);
+            for (int x = 0; x < n; x++) frame[x] = line.charAt(x);
         }
+
+        if (screen != null) present();
+        metrics.record(Metrics.Stage.Draw, System.nanoTime() - castDone);
     }
 
+    /**
+     * Splits the columns of a frame in halves until they are small enough to cast on one thread.
+     * The whole tree is built once per size and {@link #reset() reset} for every frame.
+     */
+    private final class ColumnTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        static final int THRESHOLD = 32;
+
+        private final int from;
+        private final int to;
+        private final ColumnTask left;
+        private final ColumnTask right;
+
+        ColumnTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+            if (to - from <= THRESHOLD) {
+                left = null;
+                right = null;
+            } else {
+                int mid = (from + to) >>> 1;
+                left = new ColumnTask(from, mid);
+                right = new ColumnTask(mid, to);
+            }
+        }
+
+        void reset() {
+            reinitialize();
+            if (left != null) {
+                left.reset();
+                right.reset();
+            }
+        }
+
+        @Override
+        protected void compute() {
+            if (left == null) {
+                cast(from, to);
+                return;
+            }
+            invokeAll(left, right);
+        }
+    }
 }
@@ -0,0 +1,56 @@
+package com.nat.maze.game;
+
+import com.googlecode.lanterna.input.InputProvider;
+import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.input.KeyType;
+
+/**
+ * Replays keys from a script instead of reading them from a terminal.
+ * Every character of the script is one key press in an update of its own, except that '.' is an
+ * update where nothing is pressed and whitespace is ignored. Once the script runs out the input
+ * reports EOF, which ends the game.
+ */
+public class ScriptedInput implements InputProvider {
+    private static final KeyStroke EOF = new KeyStroke(KeyType.EOF);
+
+    private final String script;
+    private int position = 0;
+    // a key was returned, the next poll ends the update
+    private boolean pressed = false;
+
+    // one key stroke per ASCII character, so replaying does not allocate
+    private final KeyStroke[] keys = new KeyStroke[128];
+
+    public ScriptedInput(String s) {
+        script = s;
+    }
+
+    @Override
+    public KeyStroke pollInput() {
+        if (pressed) {
+            pressed = false;
+            return null;
+        }
+        while (position < script.length()) {
+            char c = script.charAt(position++);
+            if (Character.isWhitespace(c)) continue;
+            if (c == '.') return null;
+            pressed = true;
+            return key(c);
+        }
+        return EOF;
+    }
+
+    @Override
+    public KeyStroke readInput() {
+        KeyStroke ks;
+        while ((ks = pollInput()) == null) ;
+        return ks;
+    }
+
+    private KeyStroke key(char c) {
+        if (c >= keys.length) return new KeyStroke(c, false, false);
+        if (keys[c] == null) keys[c] = new KeyStroke(c, false, false);
+        return keys[c];
+    }
+}
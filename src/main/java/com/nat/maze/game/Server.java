@@ -0,0 +1,279 @@
+package com.nat.maze.game;
+
+import com.googlecode.lanterna.graphics.TextGraphics;
+import com.googlecode.lanterna.screen.Screen;
+import com.googlecode.lanterna.screen.TerminalScreen;
+import com.googlecode.lanterna.terminal.ansi.TelnetTerminal;
+import com.googlecode.lanterna.terminal.ansi.TelnetTerminalServer;
+
+import javax.net.ServerSocketFactory;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts a game for every telnet connection, all in the same maze.
+ * <p>
+ * The map and its distance field are loaded once and only ever read by the sessions, a session itself is
+ * just a player, a renderer and a screen. Sessions don't get a thread each, a small pool of threads advances
+ * and renders every game at the target frame rate. Those threads never wait on a client: frames are written
+ * on another pool, a session whose last frame is still being written skips its turn, and one that stopped
+ * reading for {@link #STALL_TIMEOUT_SECONDS} is dropped.
+ * <p>
+ * Usage: {@code Server <map>|<width>x<height> [port] [threads]}
+ */
+public class Server {
+    public static final int DEFAULT_PORT = 2323;
+    public static final int STALL_TIMEOUT_SECONDS = 5;
+
+    private final Map map;
+    private final ScheduledExecutorService scheduler;
+    // everything that waits on a client: starting a screen waits for it to report its size,
+    // and writing a frame for it to read
+    private final ExecutorService io;
+    private final AtomicInteger sessions = new AtomicInteger();
+
+    public Server(Map m, int threads) {
+        map = m;
+        scheduler = Executors.newScheduledThreadPool(threads, r -> daemon(r, "session-ticker"));
+        io = Executors.newCachedThreadPool(r -> daemon(r, "session-io"));
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: Server <map>|<width>x<height> [port] [threads]");
+            System.exit(1);
+        }
+
+        Map map;
+        if (args[0].matches("[0-9]+x[0-9]+")) {
+            String[] size = args[0].split("x");
+            map = new MazeGenerator(Integer.parseInt(size[0]), Integer.parseInt(size[1])).toMap();
+        } else {
+            map = MapFile.read(args[0]);
+        }
+        // built before the first player joins instead of by them
+        map.getDistanceField();
+
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        new Server(map, threads).serve(port);
+    }
+
+    /**
+     * Accepts connections on {@code port} until the thread is interrupted.
+     */
+    public void serve(int port) throws IOException {
+        Listener listener = new Listener(port);
+        TelnetTerminalServer server = new TelnetTerminalServer(listener.factory(), port);
+        System.out.printf("Serving a %dx%d maze on port %d%n", map.getGrid().getWidth(), map.getGrid().getHeight(), port);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                TelnetTerminal terminal = server.acceptConnection();
+                Socket socket = listener.accepted;
+                io.execute(() -> {
+                    try {
+                        open(terminal, socket);
+                    } catch (IOException | RuntimeException e) {
+                        // only this connection is lost
+                        System.err.println(terminal.getRemoteSocketAddress() + ": " + e);
+                        closeQuietly(socket);
+                    }
+                });
+            }
+        } finally {
+            io.shutdownNow();
+            scheduler.shutdownNow();
+            server.close();
+        }
+    }
+
+    /**
+     * Returns the number of games being played.
+     */
+    public int getSessions() {
+        return sessions.get();
+    }
+
+    private void open(TelnetTerminal terminal, Socket socket) throws IOException {
+        GameConfig cfg = new GameConfig();
+        cfg.setMap(map);
+        // the sessions already keep every core busy
+        cfg.setParallelRendering(false);
+
+        Screen screen = new TerminalScreen(terminal);
+        screen.startScreen();
+        screen.setCursorPosition(null);
+
+        Session s = new Session(terminal, socket, screen, new Game(cfg, screen));
+        sessions.incrementAndGet();
+        long period = (long) (1_000_000_000L / cfg.getTargetFps());
+        s.future = scheduler.scheduleAtFixedRate(s, period, period, TimeUnit.NANOSECONDS);
+        // the session might have ended before it knew its future
+        if (s.closed) s.future.cancel(false);
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * The server socket, remembering the connection it accepted last. Lanterna doesn't hand out the socket
+     * of a terminal, and closing that socket is the only way to end a write the client stopped reading:
+     * closing the terminal writes to it first.
+     */
+    private static final class Listener extends ServerSocket {
+        // only ever accessed by the thread accepting connections
+        Socket accepted;
+
+        Listener(int port) throws IOException {
+            super(port);
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            accepted = super.accept();
+            return accepted;
+        }
+
+        ServerSocketFactory factory() {
+            Listener self = this;
+            return new ServerSocketFactory() {
+                @Override
+                public ServerSocket createServerSocket(int port) {
+                    return self;
+                }
+
+                @Override
+                public ServerSocket createServerSocket(int port, int backlog) {
+                    return self;
+                }
+
+                @Override
+                public ServerSocket createServerSocket(int port, int backlog, InetAddress address) {
+                    return self;
+                }
+            };
+        }
+    }
+
+    private final class Session implements Runnable {
+        private final TelnetTerminal terminal;
+        private final Socket socket;
+        private final Screen screen;
+        private final Game game;
+        volatile ScheduledFuture<?> future;
+        volatile boolean closed = false;
+        // whether a frame is being written on the io pool, and since when
+        private volatile boolean writing = false;
+        private long writeStart;
+        // the maze is cleared and the result shown until a key is pressed
+        private boolean won = false;
+
+        Session(TelnetTerminal t, Socket so, Screen s, Game g) {
+            terminal = t;
+            socket = so;
+            screen = s;
+            game = g;
+        }
+
+        @Override
+        public void run() {
+            if (closed) return;
+            if (writing) {
+                // the client isn't reading, the screen is left alone until the frame is out
+                if (System.nanoTime() - writeStart > TimeUnit.SECONDS.toNanos(STALL_TIMEOUT_SECONDS)) close();
+                return;
+            }
+            try {
+                if (won) {
+                    if (screen.pollInput() != null) close();
+                    return;
+                }
+                if (game.advance()) {
+                    write(game::refresh);
+                    return;
+                }
+                if (game.isWon()) {
+                    won = true;
+                    showWin();
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                // mostly the player disconnecting
+            }
+            close();
+        }
+
+        private void showWin() {
+            screen.clear();
+            TextGraphics g = screen.newTextGraphics();
+            g.putString(1, 1, String.format("YOU BEAT THE MAZE IN %fs!", game.getClearTime()));
+            g.putString(1, 3, "Press any key to leave");
+            write(() -> screen.refresh(Screen.RefreshType.COMPLETE));
+        }
+
+        /**
+         * Writes to the client on the io pool, the next turn of the session waits for it.
+         */
+        private void write(Write w) {
+            writeStart = System.nanoTime();
+            writing = true;
+            io.execute(() -> {
+                try {
+                    w.run();
+                    writing = false;
+                } catch (IOException | RuntimeException e) {
+                    close();
+                }
+            });
+        }
+
+        /**
+         * Ends the session. Restoring the client's screen is a write too, so it is done on the io pool,
+         * and the socket is closed after {@link #STALL_TIMEOUT_SECONDS} in any case.
+         */
+        private synchronized void close() {
+            if (closed) return;
+            closed = true;
+            ScheduledFuture<?> f = future;
+            if (f != null) f.cancel(false);
+            sessions.decrementAndGet();
+            if (writing) {
+                // also ends the write that is stuck on it
+                closeQuietly(socket);
+                return;
+            }
+            scheduler.schedule(() -> closeQuietly(socket), STALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            io.execute(() -> {
+                try {
+                    screen.stopScreen();
+                } catch (IOException | RuntimeException ignored) {
+                    // the connection is gone already
+                }
+                closeQuietly(terminal);
+            });
+        }
+    }
+
+    private interface Write {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,89 @@
+package com.nat.maze.game;
+
+import com.googlecode.lanterna.TerminalSize;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Replays a key script against a map many times without a terminal, for load testing
+ * and for checking that a change does not alter what the game does.
+ * <p>
+ * Usage: {@code Simulation <map> <script> [sessions] [columns>x<rows|none] [threads]}
+ */
+public class Simulation {
+    private static final long MAX_TICKS = 60L * 60 * Game.UPDATES_PER_SECOND;
+
+    private static final class Result {
+        final boolean won;
+        final long ticks;
+        final int frameHash;
+
+        Result(boolean w, long t, int h) {
+            won = w;
+            ticks = t;
+            frameHash = h;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: Simulation <map> <script> [sessions] [<columns>x<rows>|none] [threads]");
+            System.exit(1);
+        }
+
+        final Map map = MapFile.read(args[0]);
+        final String script = new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8);
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+        final TerminalSize size = args.length > 3 && args[3].equals("none") ? null : parseSize(args.length > 3 ? args[3] : "80x24");
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<Result>> futures = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            futures.add(pool.submit(() -> run(map, script, size)));
+        }
+
+        int won = 0;
+        long ticks = 0;
+        java.util.Map<Integer, Integer> frames = new HashMap<>();
+        for (Future<Result> f : futures) {
+            Result r = f.get();
+            if (r.won) won++;
+            ticks += r.ticks;
+            frames.merge(r.frameHash, 1, Integer::sum);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+
+        System.out.printf("%d sessions in %.2fs (%.0f sessions/min, %.0f ticks/s)%n",
+                sessions, seconds, sessions / seconds * 60, ticks / seconds);
+        System.out.printf("won: %d, ticks per session: %.1f, distinct final frames: %d%n",
+                won, (double) ticks / sessions, frames.size());
+    }
+
+    private static Result run(Map map, String script, TerminalSize size) throws IOException {
+        GameConfig cfg = new GameConfig();
+        cfg.setMap(map);
+        // the sessions already keep every core busy
+        cfg.setParallelRendering(false);
+
+        Game game = new Game(cfg, new ScriptedInput(script), size);
+        long ticks = game.simulate(MAX_TICKS);
+        return new Result(game.isWon(), ticks, game.frameHash());
+    }
+
+    private static TerminalSize parseSize(String s) {
+        String[] parts = s.split("x");
+        return new TerminalSize(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+}
@@ -13,4 +13,32 @@ public class Player extends Entity {
         position = p;
     };
 
+    // view state as of the last call to consumeChanged
+    private final double[] seen = new double[8];
+    private boolean seenOnce = false;
+
+    /**
+     * Returns whether the view of the player (position, direction, plane, pitch or depth)
+     * changed since the last call.
+     */
+    public boolean consumeChanged() {
+        boolean changed = !seenOnce
+                || seen[0] != position.x || seen[1] != position.y
+                || seen[2] != direction.x || seen[3] != direction.y
+                || seen[4] != plane.x || seen[5] != plane.y
+                || seen[6] != pitch || seen[7] != depth;
+        if (changed) {
+            seen[0] = position.x;
+            seen[1] = position.y;
+            seen[2] = direction.x;
+            seen[3] = direction.y;
+            seen[4] = plane.x;
+            seen[5] = plane.y;
+            seen[6] = pitch;
+            seen[7] = depth;
+            seenOnce = true;
+        }
+        return changed;
+    }
+
 }
@@ -0,0 +1,26 @@
+package com.nat.maze.game.generator;
+
+import java.util.function.Supplier;
+
+/**
+ * The available maze generation algorithms.
+ * Binary map files store the ordinal, so new algorithms go at the end.
+ */
+public enum Algorithm {
+    Backtracker(BacktrackerAlgorithm::new),
+    Eller(EllerAlgorithm::new),
+    Wilson(WilsonAlgorithm::new),
+    Kruskal(KruskalAlgorithm::new),
+    BinaryTree(BinaryTreeAlgorithm::new),
+    ;
+
+    private final Supplier<MazeAlgorithm> factory;
+
+    Algorithm(Supplier<MazeAlgorithm> f) {
+        factory = f;
+    }
+
+    public MazeAlgorithm create() {
+        return factory.get();
+    }
+}
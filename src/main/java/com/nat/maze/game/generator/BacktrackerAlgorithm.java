@@ -0,0 +1,58 @@
+package com.nat.maze.game.generator;
+
+import java.util.SplittableRandom;
+
+import static com.nat.maze.game.generator.Directions.*;
+
+/**
+ * Depth-first "recursive backtracker", run without recursion or an explicit stack:
+ * every cell remembers the direction it was entered from in its upper bits,
+ * so backtracking just follows those links back to the start.
+ */
+public final class BacktrackerAlgorithm implements MazeAlgorithm {
+    private static final int PARENT_SHIFT = 4;
+
+    private final int[] candidates = new int[4];
+
+    @Override
+    public void generate(byte[] cells, int width, int height, SplittableRandom random, Progress progress) {
+        if (width == 0 || height == 0) return;
+
+        int cx = 0;
+        int cy = 0;
+        long total = (long) width * height;
+        int visited = 1;
+
+        while (true) {
+            int idx = cy * width + cx;
+
+            int count = 0;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
+                if (nx >= 0 && ny >= 0 && nx < width && ny < height && cells[ny * width + nx] == 0) {
+                    candidates[count++] = d;
+                }
+            }
+
+            if (count > 0) {
+                int d = candidates[count == 1 ? 0 : random.nextInt(count)];
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
+                cells[idx] |= BIT[d];
+                // the parent link is stored as direction + 1 so that 0 still means "no parent"
+                cells[ny * width + nx] = (byte) (BIT[OPPOSITE[d]] | ((OPPOSITE[d] + 1) << PARENT_SHIFT));
+                cx = nx;
+                cy = ny;
+                if ((++visited & (Progress.STEP - 1)) == 0) progress.report(visited, total);
+                continue;
+            }
+
+            int parent = (cells[idx] >> PARENT_SHIFT) - 1;
+            if (parent < 0) break;
+            cells[idx] &= PASSAGES;
+            cx += DX[parent];
+            cy += DY[parent];
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.nat.maze.game.generator;
+
+import java.util.SplittableRandom;
+
+import static com.nat.maze.game.generator.Directions.*;
+
+/**
+ * Binary tree algorithm: every cell opens a passage either north or west, decided by a hash of
+ * its coordinates. No cell depends on any other, so any part of a maze can be generated on its own,
+ * which is what lets {@link com.nat.maze.game.MazeGenerator#chunked} page in mazes of any size.
+ * The price is a strong diagonal bias and an open top row and left column.
+ */
+public final class BinaryTreeAlgorithm implements MazeAlgorithm {
+    @Override
+    public void generate(byte[] cells, int width, int height, SplittableRandom random, Progress progress) {
+        long key = random.nextLong();
+        for (int y = 0, i = 0; y < height; y++) {
+            progress.report(y, height);
+            for (int x = 0; x < width; x++, i++) {
+                int d = carve(key, x, y);
+                if (d == N) {
+                    cells[i] |= N;
+                    cells[i - width] |= S;
+                } else if (d == W) {
+                    cells[i] |= W;
+                    cells[i - 1] |= E;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the key the cells of a maze generated from a {@code SplittableRandom} with this seed are hashed with.
+     */
+    public static long key(long seed) {
+        return new SplittableRandom(seed).nextLong();
+    }
+
+    /**
+     * Returns the direction the cell at (x, y) opens to, {@link Directions#N}, {@link Directions#W}
+     * or 0 for the top left cell.
+     */
+    public static int carve(long key, int x, int y) {
+        if (y == 0) return x == 0 ? 0 : W;
+        if (x == 0) return N;
+
+        // splitmix64 finalizer
+        long z = key + (((long) x << 32) | (y & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        z ^= z >>> 33;
+        return z < 0 ? N : W;
+    }
+}
@@ -0,0 +1,24 @@
+package com.nat.maze.game.generator;
+
+/**
+ * Primitive direction table shared by the maze algorithms.
+ * A maze cell is a bitmask of the directions in which it has a passage.
+ */
+public final class Directions {
+    public static final int N = 1;
+    public static final int S = 2;
+    public static final int E = 4;
+    public static final int W = 8;
+
+    /**
+     * Mask of the passage bits of a cell, algorithms may use the remaining bits as scratch space.
+     */
+    public static final int PASSAGES = N | S | E | W;
+
+    static final int[] BIT = {N, S, E, W};
+    static final int[] DX = {0, 0, 1, -1};
+    static final int[] DY = {-1, 1, 0, 0};
+    static final int[] OPPOSITE = {1, 0, 3, 2};
+
+    private Directions() {}
+}
@@ -0,0 +1,108 @@
+package com.nat.maze.game.generator;
+
+import java.util.SplittableRandom;
+
+import static com.nat.maze.game.generator.Directions.*;
+
+/**
+ * Eller's algorithm: builds the maze one row at a time, remembering only which set
+ * each cell of the current row belongs to. Memory is O(width) no matter the height.
+ */
+public final class EllerAlgorithm implements MazeAlgorithm {
+    /**
+     * Receives each finished row, the array is reused for the next row.
+     */
+    public interface RowConsumer {
+        void accept(int y, byte[] row);
+    }
+
+    @Override
+    public void generate(byte[] cells, int width, int height, SplittableRandom random, Progress progress) {
+        generate(width, height, random, (y, row) -> {
+            System.arraycopy(row, 0, cells, y * width, width);
+            progress.report(y + 1, height);
+        });
+    }
+
+    public void generate(int width, int height, SplittableRandom random, RowConsumer consumer) {
+        if (width == 0 || height == 0) return;
+
+        byte[] row = new byte[width];
+        // set label of each cell of the current row, carried labels are < width, new ones are width + x
+        int[] label = new int[width];
+        // union-find over the compacted labels of the row
+        int[] parent = new int[width];
+        int[] compact = new int[2 * width];
+        int[] stamp = new int[2 * width];
+        int[] last = new int[width];
+        boolean[] wentDown = new boolean[width];
+        boolean[] down = new boolean[width];
+
+        for (int x = 0; x < width; x++) label[x] = width + x;
+
+        for (int y = 0; y < height; y++) {
+            boolean lastRow = y == height - 1;
+
+            for (int x = 0; x < width; x++) {
+                row[x] = (byte) (down[x] ? N : 0);
+            }
+
+            // compact labels to 0..width-1
+            int sets = 0;
+            for (int x = 0; x < width; x++) {
+                int l = label[x];
+                if (stamp[l] != y + 1) {
+                    stamp[l] = y + 1;
+                    compact[l] = sets;
+                    parent[sets] = sets;
+                    sets++;
+                }
+                label[x] = compact[l];
+            }
+
+            // join adjacent cells of different sets
+            for (int x = 0; x + 1 < width; x++) {
+                int a = find(parent, label[x]);
+                int b = find(parent, label[x + 1]);
+                if (a != b && (lastRow || random.nextBoolean())) {
+                    parent[b] = a;
+                    row[x] |= E;
+                    row[x + 1] |= W;
+                }
+            }
+
+            if (lastRow) {
+                consumer.accept(y, row);
+                break;
+            }
+
+            // every set must continue down at least once, at its last cell at the latest
+            for (int x = 0; x < width; x++) {
+                int r = find(parent, label[x]);
+                label[x] = r;
+                last[r] = x;
+                wentDown[r] = false;
+            }
+            for (int x = 0; x < width; x++) {
+                int r = label[x];
+                down[x] = random.nextBoolean() || (last[r] == x && !wentDown[r]);
+                if (down[x]) {
+                    wentDown[r] = true;
+                    row[x] |= S;
+                } else {
+                    label[x] = width + x;
+                }
+            }
+
+            consumer.accept(y, row);
+        }
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
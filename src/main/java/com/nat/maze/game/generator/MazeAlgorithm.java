@@ -0,0 +1,22 @@
+package com.nat.maze.game.generator;
+
+import java.util.SplittableRandom;
+
+public interface MazeAlgorithm {
+    default void generate(byte[] cells, int width, int height, SplittableRandom random) {
+        generate(cells, width, height, random, Progress.NONE);
+    }
+
+    /**
+     * Carves a perfect maze.
+     *
+     * @param cells    Row-major cells, {@code width * height} long and initially zero.
+     *                 On return each cell holds the {@link Directions} bits of its passages.
+     * @param width    Width of the maze in cells.
+     * @param height   Height of the maze in cells.
+     * @param random   Source of randomness, only used by the calling thread.
+     * @param progress Told how far the maze got now and then, the generation stops with a
+     *                 {@link java.util.concurrent.CancellationException} once it is cancelled.
+     */
+    void generate(byte[] cells, int width, int height, SplittableRandom random, Progress progress);
+}
@@ -0,0 +1,51 @@
+package com.nat.maze.game.generator;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * How far a maze generation got, and the way to stop it early.
+ * Algorithms report every {@link #STEP} cells or so, which is also when they notice they were cancelled.
+ * Reported from the generating thread, read and cancelled from any.
+ */
+public class Progress {
+    /**
+     * Reports to no one and is never cancelled, cancelling it does nothing since it is shared.
+     */
+    public static final Progress NONE = new Progress() {
+        @Override
+        public void report(long done, long total) {
+        }
+
+        @Override
+        public void cancel() {
+        }
+    };
+
+    public static final int STEP = 1 << 12;
+
+    private volatile double fraction = 0;
+    private volatile boolean cancelled = false;
+
+    /**
+     * @throws CancellationException If the generation was cancelled, the algorithm stops right there.
+     */
+    public void report(long done, long total) {
+        if (cancelled) throw new CancellationException("Maze generation was cancelled");
+        fraction = total > 0 ? (double) done / total : 1;
+    }
+
+    /**
+     * Returns the part of the maze done so far, from 0 to 1.
+     */
+    public double getFraction() {
+        return fraction;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
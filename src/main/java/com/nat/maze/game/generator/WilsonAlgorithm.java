@@ -0,0 +1,62 @@
+package com.nat.maze.game.generator;
+
+import java.util.SplittableRandom;
+
+import static com.nat.maze.game.generator.Directions.*;
+
+/**
+ * Wilson's algorithm: loop-erased random walks, producing a uniformly random spanning tree.
+ * The walk direction and the in-maze flag are kept in the upper bits of each cell.
+ */
+public final class WilsonAlgorithm implements MazeAlgorithm {
+    private static final int WALK_SHIFT = 4;
+    private static final int WALK_MASK = 3 << WALK_SHIFT;
+    private static final int IN_MAZE = 1 << 6;
+
+    @Override
+    public void generate(byte[] cells, int width, int height, SplittableRandom random, Progress progress) {
+        int total = width * height;
+        if (total == 0) return;
+
+        cells[random.nextInt(total)] = IN_MAZE;
+
+        for (int start = 0; start < total; start++) {
+            if ((start & (Progress.STEP - 1)) == 0) progress.report(start, total);
+            if ((cells[start] & IN_MAZE) != 0) continue;
+
+            // random walk until the maze is hit, later visits overwrite the direction and so erase loops
+            int x = start % width;
+            int y = start / width;
+            int idx = start;
+            while ((cells[idx] & IN_MAZE) == 0) {
+                int d;
+                int nx;
+                int ny;
+                do {
+                    d = random.nextInt(4);
+                    nx = x + DX[d];
+                    ny = y + DY[d];
+                } while (nx < 0 || ny < 0 || nx >= width || ny >= height);
+                cells[idx] = (byte) ((cells[idx] & ~WALK_MASK) | (d << WALK_SHIFT));
+                x = nx;
+                y = ny;
+                idx = y * width + x;
+            }
+
+            // carve the loop-erased path into the maze
+            x = start % width;
+            y = start / width;
+            idx = start;
+            while ((cells[idx] & IN_MAZE) == 0) {
+                int d = (cells[idx] & WALK_MASK) >> WALK_SHIFT;
+                cells[idx] = (byte) ((cells[idx] & PASSAGES) | BIT[d] | IN_MAZE);
+                x += DX[d];
+                y += DY[d];
+                idx = y * width + x;
+                cells[idx] |= BIT[OPPOSITE[d]];
+            }
+        }
+
+        for (int i = 0; i < total; i++) cells[i] &= PASSAGES;
+    }
+}
@@ -0,0 +1,81 @@
+package com.nat.maze.game.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Counts non-negative values with a fixed relative precision, in the manner of HdrHistogram.
+ * <p>
+ * Values below {@code SUB_BUCKETS} are counted exactly, larger ones in buckets that double in width,
+ * each split into {@code SUB_BUCKETS / 2} linear steps. So every value is known to within about 6%,
+ * recording is a few shifts and an increment and the memory used never changes once the first value is in.
+ * Not thread safe.
+ */
+public final class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int HALF = SUB_BUCKETS >> 1;
+
+    private static final int BUCKETS = (64 - SUB_BITS + 2) * HALF;
+
+    // allocated by the first value, most histograms of a game that is not measured never get one
+    private long[] counts;
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        if (counts == null) counts = new long[BUCKETS];
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the value that {@code percentile} percent of the recorded values are at or below,
+     * rounded up to the end of its bucket.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) return Math.min(max, highestValue(i));
+        }
+        return max;
+    }
+
+    public void reset() {
+        if (counts != null) Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int shift = 64 - SUB_BITS - Long.numberOfLeadingZeros(value);
+        return ((shift + 1) << (SUB_BITS - 1)) + (int) (value >>> shift) - HALF;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int shift = (index >> (SUB_BITS - 1)) - 1;
+        long sub = (index & (HALF - 1)) + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
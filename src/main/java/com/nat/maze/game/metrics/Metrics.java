@@ -0,0 +1,187 @@
+package com.nat.maze.game.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * Timings of the stages of the game loop, DDA steps per ray and allocation per frame of one game.
+ * <p>
+ * Everything is recorded from one thread at a time, so recording is a {@link System#nanoTime()} call
+ * and a histogram increment. A frame is the render of the game thread and the refresh is a stage of its own,
+ * since a server writes it out from another thread. Allocation is that of the game thread, so the rays cast
+ * on other cores during parallel rendering and the refresh are not included.
+ * <p>
+ * Nothing is recorded until {@link #setEnabled} is called, so a game nobody measures does not pay for
+ * the histograms, which are most of the memory of a game besides its map.
+ */
+public final class Metrics {
+    public enum Stage {
+        Update,
+        Floor,
+        Cast,
+        Draw,
+        Refresh,
+        Frame,
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final String[] NAMES = new String[STAGES.length];
+
+    static {
+        for (Stage s : STAGES) NAMES[s.ordinal()] = s.name().toLowerCase(Locale.ROOT);
+    }
+
+    private final Histogram[] stages = new Histogram[STAGES.length];
+    private final long[] last = new long[STAGES.length];
+    private final Histogram raySteps = new Histogram();
+    private final Histogram allocation = new Histogram();
+    private long lastSteps = 0;
+    private long lastRays = 0;
+    private long lastAllocation = -1;
+
+    private boolean enabled = false;
+
+    // the HotSpot extension that knows how much a thread allocated, null on other VMs
+    private com.sun.management.ThreadMXBean threads;
+    private long frameThread;
+    private long frameStart;
+    private long frameAllocation;
+
+    private final StringBuilder hud = new StringBuilder();
+
+    public Metrics() {
+        for (int i = 0; i < stages.length; i++) stages[i] = new Histogram();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops recording, what was recorded so far is kept.
+     */
+    public void setEnabled(boolean b) {
+        if (b && !enabled) {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+                threads = (com.sun.management.ThreadMXBean) bean;
+                threads.setThreadAllocatedMemoryEnabled(true);
+            }
+        }
+        enabled = b;
+    }
+
+    public void record(Stage stage, long nanos) {
+        if (!enabled) return;
+        stages[stage.ordinal()].record(nanos);
+        last[stage.ordinal()] = nanos;
+    }
+
+    /**
+     * Records the DDA steps of each ray of a frame.
+     */
+    public void recordRays(int[] steps, int rays) {
+        if (!enabled) return;
+        long total = 0;
+        for (int i = 0; i < rays; i++) {
+            raySteps.record(steps[i]);
+            total += steps[i];
+        }
+        lastSteps = total;
+        lastRays = rays;
+    }
+
+    /**
+     * Starts timing a frame, which is everything up to the matching {@link #endFrame()}.
+     */
+    public void beginFrame() {
+        if (!enabled) return;
+        frameThread = Thread.currentThread().getId();
+        frameAllocation = allocatedBytes();
+        frameStart = System.nanoTime();
+    }
+
+    public void endFrame() {
+        if (!enabled) return;
+        record(Stage.Frame, System.nanoTime() - frameStart);
+        if (threads != null) {
+            lastAllocation = allocatedBytes() - frameAllocation;
+            allocation.record(lastAllocation);
+        }
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getThreadAllocatedBytes(frameThread) : 0;
+    }
+
+    public Histogram get(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    public Histogram getRaySteps() {
+        return raySteps;
+    }
+
+    public Histogram getAllocation() {
+        return allocation;
+    }
+
+    /**
+     * Returns a one line summary of the last frame, in microseconds. The builder is reused, so the line
+     * is only valid until the next call.
+     */
+    public CharSequence hudLine() {
+        hud.setLength(0);
+        for (int i = 0; i < STAGES.length; i++) {
+            hud.append(NAMES[i]).append(' ').append(last[i] / 1000).append("us ");
+        }
+        long tenths = lastRays == 0 ? 0 : lastSteps * 10 / lastRays;
+        hud.append("steps/ray ").append(tenths / 10).append('.').append(tenths % 10);
+        if (lastAllocation >= 0) hud.append(" alloc ").append(lastAllocation).append('B');
+        return hud;
+    }
+
+    /**
+     * Adds the summary of every metric to a file, so it collects every game played. Each game is a line of JSON
+     * if the name ends in ".json", and rows of CSV otherwise. Both start with the time the game ended.
+     */
+    public void write(Path file) throws IOException {
+        boolean json = file.getFileName().toString().endsWith(".json");
+        boolean header = !json && (!Files.exists(file) || Files.size(file) == 0);
+        String ended = Instant.now().toString();
+        try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (json) w.write("{\"ended\": \"" + ended + "\"");
+            else if (header) w.write("ended,metric,unit,count,mean,p50,p90,p99,max\n");
+
+            for (int i = 0; i < STAGES.length; i++) {
+                write(w, json, ended, NAMES[i], "ns", stages[i]);
+            }
+            write(w, json, ended, "steps_per_ray", "steps", raySteps);
+            if (threads != null) write(w, json, ended, "allocation_per_frame", "bytes", allocation);
+
+            if (json) w.write("}\n");
+        }
+    }
+
+    private static void write(Writer w, boolean json, String ended, String name, String unit, Histogram h) throws IOException {
+        if (json) {
+            w.write(String.format(Locale.ROOT,
+                    ", \"%s\": {\"unit\": \"%s\", \"count\": %d, \"mean\": %.1f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d}",
+                    name, unit, h.getCount(), h.getMean(),
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(90), h.getValueAtPercentile(99), h.getMax()));
+        } else {
+            w.write(String.format(Locale.ROOT, "%s,%s,%s,%d,%.1f,%d,%d,%d,%d%n",
+                    ended, name, unit, h.getCount(), h.getMean(),
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(90), h.getValueAtPercentile(99), h.getMax()));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.nat.maze.game.solver;
+
+/**
+ * Growable ring buffer of ints, kept between solves so a search allocates nothing once warmed up.
+ */
+final class IntQueue {
+    private int[] items;
+    private int head = 0;
+    private int size = 0;
+
+    IntQueue(int capacity) {
+        items = new int[Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1];
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(int v) {
+        if (size == items.length) grow();
+        items[(head + size++) & (items.length - 1)] = v;
+    }
+
+    int poll() {
+        int v = items[head];
+        head = (head + 1) & (items.length - 1);
+        size--;
+        return v;
+    }
+
+    private void grow() {
+        int[] bigger = new int[items.length * 2];
+        for (int i = 0; i < size; i++) bigger[i] = items[(head + i) & (items.length - 1)];
+        items = bigger;
+        head = 0;
+    }
+}
@@ -0,0 +1,53 @@
+package com.nat.maze.game.solver;
+
+/**
+ * Growable binary min-heap of longs, kept between solves like {@link IntQueue}.
+ */
+final class LongHeap {
+    private long[] items;
+    private int size = 0;
+
+    LongHeap(int capacity) {
+        items = new long[Math.max(capacity, 16)];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(long v) {
+        if (size == items.length) {
+            long[] bigger = new long[items.length * 2];
+            System.arraycopy(items, 0, bigger, 0, size);
+            items = bigger;
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (items[parent] <= v) break;
+            items[i] = items[parent];
+            i = parent;
+        }
+        items[i] = v;
+    }
+
+    long poll() {
+        long top = items[0];
+        long last = items[--size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && items[child + 1] < items[child]) child++;
+            if (last <= items[child]) break;
+            items[i] = items[child];
+            i = child;
+        }
+        items[i] = last;
+        return top;
+    }
+}
@@ -0,0 +1,244 @@
+package com.nat.maze.game.solver;
+
+import com.nat.maze.game.Grid;
+import com.nat.maze.game.Map;
+import com.nat.maze.game.entity.Entity;
+import com.nat.maze.math.Vector2;
+
+/**
+ * Finds shortest paths between cells of a {@link Grid}, moving in the four axis directions
+ * through every cell that is not a wall.
+ * <p>
+ * All bookkeeping is one byte per cell holding the direction a cell was reached from (0 while unvisited),
+ * which doubles as the visited set and also marks the walls, plus queues that are kept between solves.
+ * A solver is not thread safe, use one per thread.
+ */
+public final class MazeSolver {
+    public enum Method {
+        Bfs,
+        AStar,
+        BidirectionalBfs,
+    }
+
+    private static final int[] DX = {0, 0, 1, -1};
+    private static final int[] DY = {-1, 1, 0, 0};
+
+    // cameFrom values: 0 unvisited, 1..4 reached through direction value - 1, ROOT for the start
+    private static final byte ROOT = 5;
+    // set on cells reached by the backward half of a bidirectional search
+    private static final byte BACKWARD = 8;
+    // walls are marked in cameFrom too, so a search only ever reads that one array
+    private static final byte BLOCKED = 16;
+
+    private static final byte WALL = (byte) Entity.Type.Wall.value;
+
+    private final Grid grid;
+    private final int width;
+    private final int height;
+    private final int[] offset;
+    private final byte[] cameFrom;
+    // every border cell is a wall, so no reachable cell has a neighbour outside the grid
+    private final boolean sealed;
+
+    private final IntQueue queue = new IntQueue(1024);
+    private final IntQueue backQueue = new IntQueue(1024);
+    private final LongHeap heap = new LongHeap(1024);
+
+    private long expanded;
+
+    public MazeSolver(Grid g) {
+        grid = g;
+        width = g.getWidth();
+        height = g.getHeight();
+        offset = new int[]{-width, width, 1, -1};
+        cameFrom = new byte[width * height];
+        sealed = isSealed(g);
+    }
+
+    /**
+     * Returns whether every cell on the border of the grid is a wall.
+     */
+    public static boolean isSealed(Grid g) {
+        int w = g.getWidth();
+        int h = g.getHeight();
+        for (int x = 0; x < w; x++) {
+            if (!g.isWall(x, 0) || !g.isWall(x, h - 1)) return false;
+        }
+        for (int y = 0; y < h; y++) {
+            if (!g.isWall(0, y) || !g.isWall(w - 1, y)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Solves the map from the player's spawn to the flag.
+     */
+    public Solution solve(Map map, Method method) {
+        Vector2 spawn = map.getPlayerInitialPosition();
+        int goal = indexOf(grid, Entity.Type.Flag);
+        if (spawn == null || goal < 0) return new Solution(width, null, 0);
+        return solve((int) spawn.x, (int) spawn.y, goal % width, goal / width, method);
+    }
+
+    public Solution solve(int sx, int sy, int gx, int gy, Method method) {
+        int start = sy * width + sx;
+        int goal = gy * width + gx;
+
+        for (int i = 0; i < cameFrom.length; i++) {
+            cameFrom[i] = grid.get(i) == WALL ? BLOCKED : 0;
+        }
+        expanded = 0;
+
+        if (cameFrom[start] == BLOCKED || cameFrom[goal] == BLOCKED) return new Solution(width, null, 0);
+
+        switch (method) {
+            case AStar:
+                return aStar(start, goal);
+            case BidirectionalBfs:
+                return bidirectional(start, goal);
+            default:
+                return bfs(start, goal);
+        }
+    }
+
+    /**
+     * Returns the row-major index of the first cell of the given type, or -1.
+     */
+    public static int indexOf(Grid grid, Entity.Type type) {
+        int n = grid.getWidth() * grid.getHeight();
+        for (int i = 0; i < n; i++) {
+            if (grid.get(i) == type.value) return i;
+        }
+        return -1;
+    }
+
+    private Solution bfs(int start, int goal) {
+        queue.clear();
+        cameFrom[start] = ROOT;
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            expanded++;
+            if (i == goal) return new Solution(width, trace(start, goal), expanded);
+            expand(i, queue, (byte) 0);
+        }
+        return new Solution(width, null, expanded);
+    }
+
+    private Solution aStar(int start, int goal) {
+        final int gx = goal % width;
+        final int gy = goal / width;
+
+        // heap entries are (f << 35) | (cameFrom << 32) | index, so the smallest f comes first
+        heap.clear();
+        heap.add(((long) distance(start, gx, gy) << 35) | ((long) ROOT << 32) | start);
+
+        while (!heap.isEmpty()) {
+            long entry = heap.poll();
+            int i = (int) entry;
+            if (cameFrom[i] != 0) continue;
+            cameFrom[i] = (byte) ((entry >>> 32) & 7);
+            expanded++;
+            if (i == goal) return new Solution(width, trace(start, goal), expanded);
+
+            // the manhattan heuristic is consistent, so g can be recovered from f instead of being stored
+            int g = (int) (entry >>> 35) - distance(i, gx, gy) + 1;
+            for (int d = 0; d < 4; d++) {
+                if (!sealed && !inside(i, d)) continue;
+                int j = i + offset[d];
+                if (cameFrom[j] != 0) continue;
+                heap.add(((long) (g + distance(j, gx, gy)) << 35) | ((long) (d + 1) << 32) | j);
+            }
+        }
+        return new Solution(width, null, expanded);
+    }
+
+    private Solution bidirectional(int start, int goal) {
+        if (start == goal) {
+            return new Solution(width, new int[]{start}, 0);
+        }
+
+        queue.clear();
+        backQueue.clear();
+        cameFrom[start] = ROOT;
+        cameFrom[goal] = ROOT | BACKWARD;
+        queue.add(start);
+        backQueue.add(goal);
+
+        // expand whole levels, always of the smaller frontier
+        while (!queue.isEmpty() && !backQueue.isEmpty()) {
+            boolean forward = queue.size() <= backQueue.size();
+            IntQueue q = forward ? queue : backQueue;
+            byte side = forward ? 0 : BACKWARD;
+
+            for (int n = q.size(); n > 0; n--) {
+                int i = q.poll();
+                expanded++;
+                int meet = expand(i, q, side);
+                if (meet >= 0) {
+                    return forward ? join(start, goal, i, meet) : join(start, goal, meet, i);
+                }
+            }
+        }
+        return new Solution(width, null, expanded);
+    }
+
+    /**
+     * Visits the unvisited open neighbours of i and adds them to the queue.
+     * Returns a neighbour already reached from the other side of a bidirectional search, or -1.
+     */
+    private int expand(int i, IntQueue q, byte side) {
+        for (int d = 0; d < 4; d++) {
+            if (!sealed && !inside(i, d)) continue;
+            int j = i + offset[d];
+            byte c = cameFrom[j];
+            if (c != 0) {
+                if (c != BLOCKED && (c & BACKWARD) != side) return j;
+                continue;
+            }
+            cameFrom[j] = (byte) ((d + 1) | side);
+            q.add(j);
+        }
+        return -1;
+    }
+
+    private boolean inside(int i, int d) {
+        int nx = i % width + DX[d];
+        int ny = i / width + DY[d];
+        return nx >= 0 && ny >= 0 && nx < width && ny < height;
+    }
+
+    private int distance(int i, int gx, int gy) {
+        return Math.abs(i % width - gx) + Math.abs(i / width - gy);
+    }
+
+    private int parent(int i) {
+        int c = cameFrom[i] & 7;
+        return c == ROOT ? -1 : i - offset[c - 1];
+    }
+
+    private int[] trace(int start, int goal) {
+        int length = 1;
+        for (int i = goal; i != start; i = parent(i)) length++;
+
+        int[] path = new int[length];
+        for (int i = goal, k = length - 1; k >= 0; i = parent(i), k--) path[k] = i;
+        return path;
+    }
+
+    /**
+     * Builds the path of a bidirectional search, where a is reached from the start and b from the goal.
+     */
+    private Solution join(int start, int goal, int a, int b) {
+        int head = 1;
+        for (int i = a; i != start; i = parent(i)) head++;
+        int tail = 1;
+        for (int i = b; i != goal; i = parent(i)) tail++;
+
+        int[] path = new int[head + tail];
+        for (int i = a, k = head - 1; k >= 0; i = parent(i), k--) path[k] = i;
+        for (int i = b, k = head; k < path.length; i = parent(i), k++) path[k] = i;
+        return new Solution(width, path, expanded);
+    }
+}
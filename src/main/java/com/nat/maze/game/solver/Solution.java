@@ -0,0 +1,49 @@
+package com.nat.maze.game.solver;
+
+/**
+ * A path found by a {@link MazeSolver}, as row-major cell indices from the start to the goal.
+ */
+public final class Solution {
+    private final int width;
+    private final int[] cells;
+    private final long expanded;
+
+    Solution(int w, int[] c, long e) {
+        width = w;
+        cells = c;
+        expanded = e;
+    }
+
+    public boolean isFound() {
+        return cells != null;
+    }
+
+    /**
+     * Returns the number of steps from the start to the goal, or -1 if the goal can't be reached.
+     */
+    public int getLength() {
+        return cells != null ? cells.length - 1 : -1;
+    }
+
+    /**
+     * Returns the cells of the path including start and goal, or null if the goal can't be reached.
+     */
+    public int[] getCells() {
+        return cells;
+    }
+
+    public int getX(int step) {
+        return cells[step] % width;
+    }
+
+    public int getY(int step) {
+        return cells[step] / width;
+    }
+
+    /**
+     * Returns the number of cells the search expanded to find the path.
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+}
@@ -0,0 +1,41 @@
+package com.nat.maze.math;
+
+/**
+ * The cosine and sine of an angle, only recomputed when the angle changes.
+ * Turning at a constant speed every update then costs no trigonometry at all.
+ */
+public final class Rotation {
+    private double angle = 0;
+    private double cos = 1;
+    private double sin = 0;
+
+    /**
+     * Sets the angle in radians, does nothing if it is the current one.
+     *
+     * @param a The angle in radians.
+     */
+    public void setAngle(double a) {
+        if (a == angle) return;
+        angle = a;
+        cos = Math.cos(a);
+        sin = Math.sin(a);
+    }
+
+    /**
+     * Rotates the vector in place by the angle.
+     *
+     * @param v The vector to rotate.
+     */
+    public void rotate(Vector2 v) {
+        v.rotate(cos, sin);
+    }
+
+    /**
+     * Rotates the vector in place by minus the angle.
+     *
+     * @param v The vector to rotate.
+     */
+    public void rotateBack(Vector2 v) {
+        v.rotate(cos, -sin);
+    }
+}
@@ -233,6 +233,19 @@ public class Vector2 {
         }
     }
 
+    /**
+     * Rotates this vector counterclockwise by the angle with the given cosine and sine.
+     *
+     * @param cos The cosine of the angle.
+     * @param sin The sine of the angle.
+     * @see Rotation
+     */
+    public void rotate(double cos, double sin) {
+        double oldX = x;
+        x = x * cos - y * sin;
+        y = oldX * sin + y * cos;
+    }
+
     /**
      * Returns a new vector that is the sum of this vector and the specified vector (vx, vy).
      *
@@ -0,0 +1,31 @@
+package com.nat.maze.math;
+
+/**
+ * Operations on many vectors at once, kept as one array per component (structure of arrays)
+ * rather than as {@link Vector2} objects, so a batch is a plain loop over primitive arrays.
+ */
+public final class VectorBatch {
+    private VectorBatch() {}
+
+    /**
+     * Sets the vectors [from, to) to {@code base + step * t[i]}.
+     *
+     * @param base The vector every result starts from.
+     * @param step The vector scaled by each t.
+     * @param t    The scale of each vector.
+     * @param outX Receives the x-components.
+     * @param outY Receives the y-components.
+     * @param from The first index.
+     * @param to   The index after the last one.
+     */
+    public static void addScaled(Vector2 base, Vector2 step, double[] t, double[] outX, double[] outY, int from, int to) {
+        final double bx = base.x;
+        final double by = base.y;
+        final double sx = step.x;
+        final double sy = step.y;
+        for (int i = from; i < to; i++) {
+            outX[i] = bx + sx * t[i];
+            outY[i] = by + sy * t[i];
+        }
+    }
+}